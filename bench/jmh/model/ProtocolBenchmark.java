@@ -0,0 +1,483 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controller.Controller;
+import view.BotView;
+
+/**
+ * JMH benchmarks of the protocol hot paths: framing and peeking
+ * incoming messages, the handlers of both monitors for each message
+ * type, and the outbound encoders. The monitors write to a local
+ * socket drained by a background thread, so sends cost what they
+ * cost against a real server minus the network.
+ *
+ * The payloads are shaped like the game's messages as the handlers
+ * read them. The types that end a race (7, 28, 31) are left out, as
+ * they close the monitor under test.
+ *
+ * These sources are kept out of the bot's build, as they need JMH
+ * (org.openjdk.jmh:jmh-core and the annotation processor) on the
+ * class path. Run with the GC profiler for allocation figures:
+ *
+ * <pre>
+ * java -cp jmh.jar:bench-classes:bot-classes:json.jar org.openjdk.jmh.Main ProtocolBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+	
+	/**
+	 * A burst of data and lobby messages as read from a socket.
+	 */
+	private final static String STREAM =
+			"{\"m\":51}\n"
+			+ "[\"18\",1,10432,-220,310,-45]\n"
+			+ "[16,1288]\n"
+			+ "[17,1447243123456789012]\n"
+			+ "{\"m\":45,\"p\":\"1743301\",\"s\":1}\n"
+			+ "[\"18\",1,10448,-222,310,-40]\n"
+			+ "[11,1,1447243123,3,2,0]\n"
+			+ "[\"18\",2,9921,-180,295,0]\n";
+	
+	/**
+	 * Data server messages by type.
+	 */
+	private final static String[][] DATA_MESSAGES = {
+		{"1", "{\"m\":1,\"f\":[{\"p\":\"1743301\",\"n\":\"runner\"},{\"p\":\"2210987\",\"n\":\"fox\"},"
+				+ "{\"p\":\"903412\",\"n\":\"kiwi\"}]}"},
+		{"35", "{\"m\":35,\"a\":\"10.0.0.12\",\"p\":\"1743301\",\"s\":88123}"},
+		{"51", "{\"m\":51}"},
+	};
+	
+	/**
+	 * Lobby messages by type.
+	 */
+	private final static String[][] LOBBY_MESSAGES = {
+		{"4", "[4,9]"},
+		{"5", "[5,{\"p\":[{\"p\":\"1743301\"},{\"p\":\"bench\"},{\"p\":\"2210987\"}]}]"},
+		{"11", "[11,1,1447243123,3,2,0]"},
+		{"13", "[13,1,2000,1,5,0,1]"},
+		{"16", "[16,1288]"},
+		{"17", "[17,1447243123456789012]"},
+		{"18", "[\"18\",1,10432,-220,310,-45]"},
+		{"39", "[39,\"b1f0c3\"]"},
+	};
+	
+	/**
+	 * Framing and type peeking of a socket stream.
+	 * @param theState the monitor and stream.
+	 * @return the type of the message read.
+	 */
+	@Benchmark
+	public int readSocketData(ReadState theState) {
+		return theState.myMonitor.readSocketData(theState.myInput).peekType();
+	}
+	
+	/**
+	 * DataMonitor.processSocketData for one message type.
+	 * @param theState the monitor and message.
+	 */
+	@Benchmark
+	public void dataMonitor(DataState theState) {
+		JsonCursor cursor = theState.myCursor.reset(theState.myMessage, 0, theState.myMessage.length);
+		theState.myMonitor.processSocketData(cursor, theState.myMonitor.getWriter());
+	}
+	
+	/**
+	 * GameLobbyMonitor.processSocketData for one message type.
+	 * @param theState the monitor and message.
+	 */
+	@Benchmark
+	public void lobbyMonitor(LobbyState theState) {
+		JsonCursor cursor = theState.myCursor.reset(theState.myMessage, 0, theState.myMessage.length);
+		theState.myMonitor.processSocketData(cursor, theState.myMonitor.getWriter());
+	}
+	
+	/**
+	 * Encoding and sending a position echo.
+	 * @param theState the monitor.
+	 */
+	@Benchmark
+	public void echoMovement(EncoderState theState) {
+		theState.myMonitor.echoMovement(10432, -220, 310, -45);
+	}
+	
+	/**
+	 * Encoding and sending a pong, through the "16" handler.
+	 * @param theState the monitor and ping.
+	 */
+	@Benchmark
+	public void sendPong(EncoderState theState) {
+		theState.myMonitor.processSocketData(theState.myPing.reset(theState.myPingBytes, 0,
+				theState.myPingBytes.length), null);
+	}
+	
+	/**
+	 * Encoding and sending a death, through the "13" handler.
+	 * @param theState the monitor and death.
+	 */
+	@Benchmark
+	public void die(EncoderState theState) {
+		theState.myMonitor.processSocketData(theState.myDeath.reset(theState.myDeathBytes, 0,
+				theState.myDeathBytes.length), null);
+	}
+	
+	/**
+	 * Stand-in for the game's servers: accepts connections and
+	 * discards whatever is sent.
+	 */
+	@State(Scope.Benchmark)
+	public static class Sink {
+		
+		/**
+		 * The server socket.
+		 */
+		private ServerSocket myServer;
+		
+		/**
+		 * Endpoints pointing at the sink.
+		 */
+		private Endpoints myEndpoints;
+		
+		/**
+		 * Start accepting connections.
+		 * @throws IOException if no port can be bound.
+		 */
+		@Setup(Level.Trial)
+		public void start() throws IOException {
+			myServer = new ServerSocket(0, 64, InetAddress.getLoopbackAddress());
+			String host = myServer.getInetAddress().getHostAddress();
+			int port = myServer.getLocalPort();
+			myEndpoints = new Endpoints(URI.create("http://" + host + ":1/"), host, port, port);
+			
+			Thread accept = new Thread(() -> {
+				while (!myServer.isClosed()) {
+					try {
+						Socket socket = myServer.accept();
+						Thread drain = new Thread(() -> drain(socket), "sink-drain");
+						drain.setDaemon(true);
+						drain.start();
+					} catch (IOException e) {
+						// Closed.
+					}
+				}
+			}, "sink-accept");
+			accept.setDaemon(true);
+			accept.start();
+		}
+		
+		/**
+		 * Stop accepting connections.
+		 * @throws IOException if the socket cannot be closed.
+		 */
+		@TearDown(Level.Trial)
+		public void stop() throws IOException {
+			myServer.close();
+		}
+		
+		/**
+		 * Create a client connected to the sink.
+		 * @return the client.
+		 */
+		public Client createClient() {
+			Controller controller = new Controller(new BotView() {
+				@Override
+				public void showLoginAlert(String theMessage) {
+				}
+				
+				@Override
+				public void showMainScene() {
+				}
+			}, myEndpoints);
+			return new Client(controller, myEndpoints);
+		}
+		
+		/**
+		 * Read and discard everything from a connection.
+		 * @param theSocket the connection.
+		 */
+		private static void drain(Socket theSocket) {
+			byte[] buffer = new byte[65536];
+			try (InputStream input = theSocket.getInputStream()) {
+				while (input.read(buffer) >= 0) {
+					// Discard.
+				}
+			} catch (IOException e) {
+				// Closed.
+			}
+		}
+	}
+	
+	/**
+	 * A monitor reading an endless replay of STREAM.
+	 */
+	@State(Scope.Thread)
+	public static class ReadState {
+		
+		/**
+		 * The monitor.
+		 */
+		private DataMonitor myMonitor;
+		
+		/**
+		 * The replayed stream.
+		 */
+		private InputStream myInput;
+		
+		/**
+		 * Create the monitor and the stream.
+		 * @param theSink the sink the monitor connects to.
+		 * @throws IOException if the monitor cannot connect.
+		 */
+		@Setup(Level.Trial)
+		public void setup(Sink theSink) throws IOException {
+			myMonitor = new DataMonitor(theSink.createClient());
+			myMonitor.connect();
+			myInput = new ReplayStream(STREAM.getBytes(StandardCharsets.UTF_8));
+		}
+		
+		/**
+		 * Stop the monitor.
+		 */
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			myMonitor.stopDataMonitor();
+		}
+	}
+	
+	/**
+	 * A data monitor and one message.
+	 */
+	@State(Scope.Thread)
+	public static class DataState {
+		
+		/**
+		 * The message type.
+		 */
+		@Param({"1", "35", "51"})
+		public String myType;
+		
+		/**
+		 * The monitor.
+		 */
+		private DataMonitor myMonitor;
+		
+		/**
+		 * The cursor over the message.
+		 */
+		private JsonCursor myCursor;
+		
+		/**
+		 * The message.
+		 */
+		private byte[] myMessage;
+		
+		/**
+		 * Create the monitor. A new one per iteration, so that every
+		 * iteration starts from the same state.
+		 * @param theSink the sink the monitor connects to.
+		 * @throws IOException if the monitor cannot connect.
+		 */
+		@Setup(Level.Iteration)
+		public void setup(Sink theSink) throws IOException {
+			myMonitor = new DataMonitor(theSink.createClient());
+			myMonitor.connect();
+			myCursor = new JsonCursor();
+			myMessage = payload(DATA_MESSAGES, myType);
+		}
+		
+		/**
+		 * Stop the monitor.
+		 */
+		@TearDown(Level.Iteration)
+		public void tearDown() {
+			myMonitor.stopDataMonitor();
+		}
+	}
+	
+	/**
+	 * A lobby monitor and one message.
+	 */
+	@State(Scope.Thread)
+	public static class LobbyState {
+		
+		/**
+		 * The message type.
+		 */
+		@Param({"4", "5", "11", "13", "16", "17", "18", "39"})
+		public String myType;
+		
+		/**
+		 * The monitor.
+		 */
+		private GameLobbyMonitor myMonitor;
+		
+		/**
+		 * The cursor over the message.
+		 */
+		private JsonCursor myCursor;
+		
+		/**
+		 * The message.
+		 */
+		private byte[] myMessage;
+		
+		/**
+		 * Create the monitor.
+		 * @param theSink the sink the monitor connects to.
+		 * @throws IOException if the monitor cannot connect.
+		 */
+		@Setup(Level.Trial)
+		public void setup(Sink theSink) throws IOException {
+			myMonitor = new GameLobbyMonitor(theSink.createClient(), theSink.myServer.getInetAddress()
+					.getHostAddress(), 88123);
+			myMonitor.connect();
+			myCursor = new JsonCursor();
+			myMessage = payload(LOBBY_MESSAGES, myType);
+		}
+		
+		/**
+		 * Stop the monitor.
+		 */
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			myMonitor.stopMonitor();
+		}
+	}
+	
+	/**
+	 * A lobby monitor for the outbound encoders.
+	 */
+	@State(Scope.Thread)
+	public static class EncoderState {
+		
+		/**
+		 * The monitor.
+		 */
+		private GameLobbyMonitor myMonitor;
+		
+		/**
+		 * Cursor over the ping.
+		 */
+		private JsonCursor myPing;
+		
+		/**
+		 * Cursor over the death.
+		 */
+		private JsonCursor myDeath;
+		
+		/**
+		 * A ping.
+		 */
+		private byte[] myPingBytes;
+		
+		/**
+		 * A death.
+		 */
+		private byte[] myDeathBytes;
+		
+		/**
+		 * Create the monitor.
+		 * @param theSink the sink the monitor connects to.
+		 * @throws IOException if the monitor cannot connect.
+		 */
+		@Setup(Level.Trial)
+		public void setup(Sink theSink) throws IOException {
+			myMonitor = new GameLobbyMonitor(theSink.createClient(), theSink.myServer.getInetAddress()
+					.getHostAddress(), 88123);
+			myMonitor.connect();
+			myPing = new JsonCursor();
+			myDeath = new JsonCursor();
+			myPingBytes = payload(LOBBY_MESSAGES, "16");
+			myDeathBytes = payload(LOBBY_MESSAGES, "13");
+		}
+		
+		/**
+		 * Stop the monitor.
+		 */
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			myMonitor.stopMonitor();
+		}
+	}
+	
+	/**
+	 * Look up the payload of a message type.
+	 * @param theMessages the messages by type.
+	 * @param theType the type.
+	 * @return the payload.
+	 */
+	private static byte[] payload(String[][] theMessages, String theType) {
+		for (String[] message : theMessages) {
+			if (message[0].equals(theType)) {
+				return message[1].getBytes(StandardCharsets.UTF_8);
+			}
+		}
+		throw new IllegalArgumentException("No payload for type " + theType + ".");
+	}
+	
+	/**
+	 * An input stream repeating the same bytes forever.
+	 */
+	private static class ReplayStream extends InputStream {
+		
+		/**
+		 * The bytes.
+		 */
+		private byte[] myBytes;
+		
+		/**
+		 * The position in the bytes.
+		 */
+		private int myPosition;
+		
+		/**
+		 * Construct a new replay stream.
+		 * @param theBytes the bytes to repeat.
+		 */
+		private ReplayStream(byte[] theBytes) {
+			myBytes = theBytes;
+		}
+		
+		@Override
+		public int read() {
+			int b = myBytes[myPosition];
+			myPosition = (myPosition + 1) % myBytes.length;
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] theBuffer, int theOffset, int theLength) {
+			int length = Math.min(theLength, myBytes.length - myPosition);
+			System.arraycopy(myBytes, myPosition, theBuffer, theOffset, length);
+			myPosition = (myPosition + length) % myBytes.length;
+			return length;
+		}
+	}
+}
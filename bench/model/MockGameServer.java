@@ -0,0 +1,876 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the game's servers, for exercising bots
+ * offline. It speaks the three protocols a bot uses:
+ *
+ * <ul>
+ * <li>login (m:3) over HTTP with a gzip response. The real server
+ * uses HTTPS; plain HTTP spares the mock a certificate the bots
+ * would have to trust, and exercises the same client code.</li>
+ * <li>the data server: the challenge (m:51), the friend list (m:1)
+ * once the bot answers it with a token issued by the login, and
+ * game invites (m:35).</li>
+ * <li>the lobby: "39", the race start "5", pings "16" followed by
+ * the time stamp "17", position corrections "18" of a synthetic
+ * player, power-ups "11", deaths "13" and the race end "28".</li>
+ * </ul>
+ *
+ * Every account logs in with any non-empty password. Point a
+ * Client at {@link #getEndpoints()} to use the mock, and see
+ * MockLoadTest for driving thousands of bots against it.
+ */
+public class MockGameServer {
+	
+	/**
+	 * Interval of the synthetic player's position corrections.
+	 */
+	private final static long MOVE_INTERVAL_MS = 50;
+	
+	/**
+	 * Interval of the lobby pings.
+	 */
+	private final static long PING_INTERVAL_MS = 1000;
+	
+	/**
+	 * Interval of the power-ups and deaths sent to each race.
+	 */
+	private final static long EVENT_INTERVAL_MS = 2000;
+	
+	/**
+	 * Length of the countdown after a race starts, during which the
+	 * bot replies [19] once a second.
+	 */
+	private final static long COUNTDOWN_MS = 4000;
+	
+	/**
+	 * The login server.
+	 */
+	private HttpServer myLoginServer;
+	
+	/**
+	 * The data server.
+	 */
+	private ServerSocket myDataServer;
+	
+	/**
+	 * The lobby server.
+	 */
+	private ServerSocket myLobbyServer;
+	
+	/**
+	 * Runs the races.
+	 */
+	private ScheduledExecutorService myScheduler;
+	
+	/**
+	 * The players by email.
+	 */
+	private Map<String, Player> myPlayers;
+	
+	/**
+	 * The players by login token.
+	 */
+	private Map<String, Player> myTokens;
+	
+	/**
+	 * The races by game token, until the bot joins.
+	 */
+	private Map<Integer, Race> myInvites;
+	
+	/**
+	 * The races in progress.
+	 */
+	private List<Race> myRaces;
+	
+	/**
+	 * Source of player IDs and game tokens.
+	 */
+	private AtomicInteger myNextID;
+	
+	/**
+	 * Number of logins.
+	 */
+	private AtomicLong myLoginCount;
+	
+	/**
+	 * Number of messages sent to the bots.
+	 */
+	private AtomicLong mySentCount;
+	
+	/**
+	 * Number of messages received from the bots, by type.
+	 */
+	private AtomicLongArray myReceivedCounts;
+	
+	/**
+	 * Number of pings answered.
+	 */
+	private AtomicLong myPongCount;
+	
+	/**
+	 * Total time from ping to pong, in nanoseconds.
+	 */
+	private AtomicLong myPongTotal;
+	
+	/**
+	 * Longest time from ping to pong, in nanoseconds.
+	 */
+	private AtomicLong myPongMax;
+	
+	/**
+	 * Number of pings answered during a countdown.
+	 */
+	private AtomicLong myCountdownPongCount;
+	
+	/**
+	 * Longest time from ping to pong during a countdown, in
+	 * nanoseconds.
+	 */
+	private AtomicLong myCountdownPongMax;
+	
+	/**
+	 * Construct a new mock server listening on free local ports.
+	 * @throws IOException if a port cannot be bound.
+	 */
+	public MockGameServer() throws IOException {
+		InetAddress local = InetAddress.getLoopbackAddress();
+		myLoginServer = HttpServer.create(new InetSocketAddress(local, 0), 0);
+		myLoginServer.createContext("/", this::login);
+		myLoginServer.setExecutor(Executors.newFixedThreadPool(4));
+		myDataServer = new ServerSocket(0, 1024, local);
+		myLobbyServer = new ServerSocket(0, 1024, local);
+		myScheduler = Executors.newScheduledThreadPool(2);
+		
+		myPlayers = new ConcurrentHashMap<String, Player>();
+		myTokens = new ConcurrentHashMap<String, Player>();
+		myInvites = new ConcurrentHashMap<Integer, Race>();
+		myRaces = new CopyOnWriteArrayList<Race>();
+		myNextID = new AtomicInteger(1000);
+		myLoginCount = new AtomicLong();
+		mySentCount = new AtomicLong();
+		myReceivedCounts = new AtomicLongArray(64);
+		myPongCount = new AtomicLong();
+		myPongTotal = new AtomicLong();
+		myPongMax = new AtomicLong();
+		myCountdownPongCount = new AtomicLong();
+		myCountdownPongMax = new AtomicLong();
+	}
+	
+	/**
+	 * Start accepting logins and connections.
+	 */
+	public void start() {
+		myLoginServer.start();
+		startAccepting(myDataServer, DataSession::new, "mock-data-accept");
+		startAccepting(myLobbyServer, LobbySession::new, "mock-lobby-accept");
+		
+		myScheduler.scheduleAtFixedRate(() -> tick(Race::move), MOVE_INTERVAL_MS, MOVE_INTERVAL_MS,
+				TimeUnit.MILLISECONDS);
+		myScheduler.scheduleAtFixedRate(() -> tick(Race::ping), PING_INTERVAL_MS, PING_INTERVAL_MS,
+				TimeUnit.MILLISECONDS);
+		myScheduler.scheduleAtFixedRate(() -> tick(Race::event), EVENT_INTERVAL_MS, EVENT_INTERVAL_MS,
+				TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Stop the servers and close every connection.
+	 */
+	public void stop() {
+		myLoginServer.stop(0);
+		myScheduler.shutdownNow();
+		close(myDataServer);
+		close(myLobbyServer);
+		
+		for (Player player : myPlayers.values()) {
+			if (player.myData != null) {
+				player.myData.close();
+			}
+		}
+		for (Race race : myRaces) {
+			race.myLobby.close();
+		}
+	}
+	
+	/**
+	 * Returns endpoints pointing a Client at this server.
+	 * @return the endpoints.
+	 */
+	public Endpoints getEndpoints() {
+		String host = myDataServer.getInetAddress().getHostAddress();
+		return new Endpoints(URI.create("http://" + host + ":" + myLoginServer.getAddress().getPort() + "/"),
+				host, myDataServer.getLocalPort(), myLobbyServer.getLocalPort());
+	}
+	
+	/**
+	 * Put a player in the friend list of an account.
+	 * @param theEmail the account's email.
+	 * @param theFriendID the friend's player ID.
+	 * @param theFriendName the friend's user name.
+	 */
+	public void addFriend(String theEmail, String theFriendID, String theFriendName) {
+		Player player = getPlayer(theEmail);
+		player.myFriends.put(new JSONObject().put("p", theFriendID).put("n", theFriendName));
+	}
+	
+	/**
+	 * Invite an account's bot to a custom game hosted by a friend.
+	 * @param theEmail the account's email.
+	 * @param theFriendID the player ID of the host.
+	 * @return false if the bot is not connected to the data server.
+	 */
+	public boolean invite(String theEmail, String theFriendID) {
+		Player player = getPlayer(theEmail);
+		DataSession session = player.myData;
+		
+		if (session == null) {
+			return false;
+		}
+		
+		int game = myNextID.incrementAndGet();
+		myInvites.put(game, new Race(player, theFriendID));
+		session.send(new JSONObject()
+				.put("m", 35)
+				.put("a", myLobbyServer.getInetAddress().getHostAddress())
+				.put("p", theFriendID)
+				.put("s", game)
+				.toString());
+		return true;
+	}
+	
+	/**
+	 * Close every bot's data connection, as a restart of the data
+	 * server would.
+	 * @return the number of connections closed.
+	 */
+	public int dropDataConnections() {
+		int dropped = 0;
+		for (Player player : myPlayers.values()) {
+			DataSession session = player.myData;
+			if (session != null) {
+				session.close();
+				dropped++;
+			}
+		}
+		return dropped;
+	}
+	
+	/**
+	 * Returns the number of bots connected and logged in to the
+	 * data server.
+	 * @return the number of data connections.
+	 */
+	public int getDataConnectionCount() {
+		int count = 0;
+		for (Player player : myPlayers.values()) {
+			count += player.myData != null ? 1 : 0;
+		}
+		return count;
+	}
+	
+	/**
+	 * End every race in progress.
+	 */
+	public void endRaces() {
+		for (Race race : myRaces) {
+			race.myLobby.send("[28]");
+		}
+	}
+	
+	/**
+	 * Returns the number of races in progress.
+	 * @return the number of races.
+	 */
+	public int getRaceCount() {
+		return myRaces.size();
+	}
+	
+	/**
+	 * Returns the number of logins.
+	 * @return the number of logins.
+	 */
+	public long getLoginCount() {
+		return myLoginCount.get();
+	}
+	
+	/**
+	 * Returns the number of messages sent to the bots.
+	 * @return the number of messages.
+	 */
+	public long getSentCount() {
+		return mySentCount.get();
+	}
+	
+	/**
+	 * Returns the number of messages of a type received from the bots.
+	 * @param theType the message type.
+	 * @return the number of messages.
+	 */
+	public long getReceivedCount(int theType) {
+		return theType >= 0 && theType < myReceivedCounts.length() ? myReceivedCounts.get(theType) : 0;
+	}
+	
+	/**
+	 * Returns the number of messages received from the bots.
+	 * @return the number of messages.
+	 */
+	public long getReceivedCount() {
+		long count = 0;
+		for (int i = 0; i < myReceivedCounts.length(); i++) {
+			count += myReceivedCounts.get(i);
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the number of pings the bots answered.
+	 * @return the number of pongs.
+	 */
+	public long getPongCount() {
+		return myPongCount.get();
+	}
+	
+	/**
+	 * Returns the average time from ping to pong.
+	 * @return the time in milliseconds.
+	 */
+	public double getPongAverage() {
+		long count = myPongCount.get();
+		return count == 0 ? 0 : myPongTotal.get() / 1e6 / count;
+	}
+	
+	/**
+	 * Returns the longest time from ping to pong.
+	 * @return the time in milliseconds.
+	 */
+	public double getPongMax() {
+		return myPongMax.get() / 1e6;
+	}
+	
+	/**
+	 * Handle a login request.
+	 * @param theExchange the request.
+	 * @throws IOException if the response cannot be sent.
+	 */
+	private void login(HttpExchange theExchange) throws IOException {
+		JSONObject request = new JSONObject(new String(theExchange.getRequestBody().readAllBytes(),
+				StandardCharsets.UTF_8));
+		JSONObject response = new JSONObject().put("m", 3);
+		
+		if (request.optString("w").isEmpty()) {
+			// Rejected, as the real server does: no token or ID.
+		} else {
+			Player player = getPlayer(request.getString("e"));
+			myTokens.put(player.myToken, player);
+			response.put("a", player.myToken).put("p", player.myID);
+			myLoginCount.incrementAndGet();
+		}
+		
+		theExchange.getResponseHeaders().add("Content-Encoding", "gzip");
+		theExchange.sendResponseHeaders(200, 0);
+		try (OutputStream output = new GZIPOutputStream(theExchange.getResponseBody())) {
+			output.write(response.toString().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+	
+	/**
+	 * Return the player of an account, creating it if needed.
+	 * @param theEmail the account's email.
+	 * @return the player.
+	 */
+	private Player getPlayer(String theEmail) {
+		return myPlayers.computeIfAbsent(theEmail, email -> new Player(String.valueOf(myNextID.incrementAndGet())));
+	}
+	
+	/**
+	 * Returns the number of pings the bots answered during the
+	 * countdown of their race.
+	 * @return the number of pongs.
+	 */
+	public long getCountdownPongCount() {
+		return myCountdownPongCount.get();
+	}
+	
+	/**
+	 * Returns the longest time from ping to pong during the
+	 * countdown of a race.
+	 * @return the round trip in milliseconds.
+	 */
+	public double getCountdownPongMax() {
+		return myCountdownPongMax.get() / 1e6;
+	}
+	
+	/**
+	 * Run an action on every race in progress.
+	 * @param theAction the action.
+	 */
+	private void tick(java.util.function.Consumer<Race> theAction) {
+		for (Race race : myRaces) {
+			try {
+				theAction.accept(race);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Count a message received from a bot.
+	 * @param theType the message type.
+	 */
+	private void received(int theType) {
+		if (theType >= 0 && theType < myReceivedCounts.length()) {
+			myReceivedCounts.incrementAndGet(theType);
+		}
+	}
+	
+	/**
+	 * Accept connections on a thread of their own, starting a session
+	 * for each.
+	 * @param theServer the server socket.
+	 * @param theFactory creates the session of a connection.
+	 * @param theName the name of the accepting thread.
+	 */
+	private void startAccepting(ServerSocket theServer, SessionFactory theFactory, String theName) {
+		Thread thread = new Thread(() -> {
+			while (!theServer.isClosed()) {
+				try {
+					Session session = theFactory.create(this, theServer.accept());
+					BotThreads.start(session, "mock-session");
+				} catch (IOException e) {
+					// Closed.
+				}
+			}
+		}, theName);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Close a server socket, ignoring failures.
+	 * @param theServer the server socket.
+	 */
+	private static void close(ServerSocket theServer) {
+		try {
+			theServer.close();
+		} catch (IOException e) {
+			// Already closed.
+		}
+	}
+	
+	/**
+	 * Creates the session of an accepted connection.
+	 */
+	private interface SessionFactory {
+		
+		/**
+		 * Create a session.
+		 * @param theServer the mock server.
+		 * @param theSocket the accepted connection.
+		 * @return the session.
+		 * @throws IOException if the connection's streams cannot be opened.
+		 */
+		Session create(MockGameServer theServer, Socket theSocket) throws IOException;
+	}
+	
+	/**
+	 * An account known to the mock.
+	 */
+	private static class Player {
+		
+		/**
+		 * The player ID.
+		 */
+		private String myID;
+		
+		/**
+		 * The login token.
+		 */
+		private String myToken;
+		
+		/**
+		 * The friend list, as sent in m:1.
+		 */
+		private JSONArray myFriends;
+		
+		/**
+		 * The connection to the data server, or null.
+		 */
+		private volatile DataSession myData;
+		
+		/**
+		 * Construct a new player.
+		 * @param theID the player ID.
+		 */
+		private Player(String theID) {
+			myID = theID;
+			myToken = Long.toHexString(new Random().nextLong());
+			myFriends = new JSONArray();
+		}
+	}
+	
+	/**
+	 * A connection from a bot, read line by line on a thread of its own.
+	 */
+	private abstract static class Session implements Runnable {
+		
+		/**
+		 * The mock server.
+		 */
+		protected MockGameServer myServer;
+		
+		/**
+		 * The connection.
+		 */
+		private Socket mySocket;
+		
+		/**
+		 * The connection's output.
+		 */
+		private OutputStream myOutput;
+		
+		/**
+		 * Construct a new session.
+		 * @param theServer the mock server.
+		 * @param theSocket the connection.
+		 * @throws IOException if the output cannot be opened.
+		 */
+		protected Session(MockGameServer theServer, Socket theSocket) throws IOException {
+			myServer = theServer;
+			mySocket = theSocket;
+			mySocket.setTcpNoDelay(true);
+			myOutput = theSocket.getOutputStream();
+		}
+		
+		@Override
+		public void run() {
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(mySocket.getInputStream(), StandardCharsets.UTF_8))) {
+				opened();
+				String line = null;
+				
+				while ((line = reader.readLine()) != null) {
+					if (!line.isEmpty()) {
+						receive(line);
+					}
+				}
+			} catch (IOException e) {
+				// Closed.
+			} finally {
+				close();
+				closed();
+			}
+		}
+		
+		/**
+		 * Send a message.
+		 * @param theMessage the message, without the line terminator.
+		 */
+		public void send(String theMessage) {
+			byte[] bytes = (theMessage + "\n").getBytes(StandardCharsets.UTF_8);
+			try {
+				synchronized (myOutput) {
+					myOutput.write(bytes);
+				}
+				myServer.mySentCount.incrementAndGet();
+			} catch (IOException e) {
+				close();
+			}
+		}
+		
+		/**
+		 * Close the connection.
+		 */
+		public void close() {
+			try {
+				mySocket.close();
+			} catch (IOException e) {
+				// Already closed.
+			}
+		}
+		
+		/**
+		 * Called when the connection is opened.
+		 */
+		protected abstract void opened();
+		
+		/**
+		 * Called for every message from the bot.
+		 * @param theMessage the message.
+		 */
+		protected abstract void receive(String theMessage);
+		
+		/**
+		 * Called when the connection has closed.
+		 */
+		protected abstract void closed();
+	}
+	
+	/**
+	 * A bot's connection to the data server.
+	 */
+	private static class DataSession extends Session {
+		
+		/**
+		 * The logged in player, or null until the challenge is answered.
+		 */
+		private Player myPlayer;
+		
+		/**
+		 * Construct a new data session.
+		 * @param theServer the mock server.
+		 * @param theSocket the connection.
+		 * @throws IOException if the output cannot be opened.
+		 */
+		private DataSession(MockGameServer theServer, Socket theSocket) throws IOException {
+			super(theServer, theSocket);
+		}
+		
+		@Override
+		protected void opened() {
+			send("{\"m\":51}");
+		}
+		
+		@Override
+		protected void receive(String theMessage) {
+			JSONObject message = new JSONObject(theMessage);
+			int type = message.getInt("m");
+			myServer.received(type);
+			
+			if (type == 1) {
+				Player player = myServer.myTokens.get(message.optString("a"));
+				
+				if (player == null || !player.myID.equals(message.optString("p"))) {
+					// Unknown token: the real server hangs up too.
+					close();
+					return;
+				}
+				
+				myPlayer = player;
+				player.myData = this;
+				send(new JSONObject().put("m", 1).put("f", player.myFriends).toString());
+			} else if (type == 37) {
+				send("{\"m\":37}");
+			}
+		}
+		
+		@Override
+		protected void closed() {
+			if (myPlayer != null && myPlayer.myData == this) {
+				myPlayer.myData = null;
+			}
+		}
+	}
+	
+	/**
+	 * A bot's connection to the lobby.
+	 */
+	private static class LobbySession extends Session {
+		
+		/**
+		 * The race, or null until the bot joins one.
+		 */
+		private Race myRace;
+		
+		/**
+		 * Construct a new lobby session.
+		 * @param theServer the mock server.
+		 * @param theSocket the connection.
+		 * @throws IOException if the output cannot be opened.
+		 */
+		private LobbySession(MockGameServer theServer, Socket theSocket) throws IOException {
+			super(theServer, theSocket);
+		}
+		
+		@Override
+		protected void opened() {
+			send("[39,\"lobby\"]");
+		}
+		
+		@Override
+		protected void receive(String theMessage) {
+			if (theMessage.startsWith("{")) {
+				JSONObject message = new JSONObject(theMessage);
+				myServer.received(message.getInt("m"));
+				
+				if (message.getInt("m") == 5 && myRace == null) {
+					myRace = myServer.myInvites.remove(message.getInt("g"));
+					if (myRace == null) {
+						close();
+						return;
+					}
+					myRace.start(this);
+				}
+			} else {
+				JSONArray message = new JSONArray(theMessage);
+				myServer.received(message.getInt(0));
+				
+				if (message.getInt(0) == 4 && myRace != null) {
+					myRace.pong(message.getInt(1));
+				}
+			}
+		}
+		
+		@Override
+		protected void closed() {
+			if (myRace != null) {
+				myServer.myRaces.remove(myRace);
+			}
+		}
+	}
+	
+	/**
+	 * A custom game between a synthetic player and a bot.
+	 */
+	private class Race {
+		
+		/**
+		 * The bot's player.
+		 */
+		private Player myBot;
+		
+		/**
+		 * The player ID of the synthetic player hosting the game.
+		 */
+		private String myHostID;
+		
+		/**
+		 * The bot's lobby connection.
+		 */
+		private LobbySession myLobby;
+		
+		/**
+		 * The synthetic player's position and speed.
+		 */
+		private int myX, myY, myXV, myYV;
+		
+		/**
+		 * The number of the last ping.
+		 */
+		private int myPing;
+		
+		/**
+		 * System.nanoTime() of the last ping.
+		 */
+		private volatile long myPingTime;
+		
+		/**
+		 * System.nanoTime() at which the race started.
+		 */
+		private long myStartTime;
+		
+		/**
+		 * Source of the synthetic player's moves.
+		 */
+		private Random myRandom;
+		
+		/**
+		 * Construct a new race.
+		 * @param theBot the bot's player.
+		 * @param theHostID the host's player ID.
+		 */
+		private Race(Player theBot, String theHostID) {
+			myBot = theBot;
+			myHostID = theHostID;
+			myRandom = new Random();
+			myXV = 300;
+		}
+		
+		/**
+		 * Start the race once the bot has joined.
+		 * @param theLobby the bot's lobby connection.
+		 */
+		private void start(LobbySession theLobby) {
+			myLobby = theLobby;
+			myStartTime = System.nanoTime();
+			JSONArray players = new JSONArray()
+					.put(new JSONObject().put("p", myHostID))
+					.put(new JSONObject().put("p", myBot.myID));
+			myLobby.send(new JSONArray().put(5).put(new JSONObject().put("p", players)).toString());
+			myRaces.add(this);
+		}
+		
+		/**
+		 * Move the synthetic player and send its position.
+		 */
+		private synchronized void move() {
+			if (myRandom.nextInt(10) == 0) {
+				myXV = 200 + myRandom.nextInt(200);
+				myYV = myRandom.nextInt(400) - 200;
+			}
+			myX += myXV * MOVE_INTERVAL_MS / 1000;
+			myY += myYV * MOVE_INTERVAL_MS / 1000;
+			myLobby.send("[\"18\",1," + myX + "," + myY + "," + myXV + "," + myYV + "]");
+		}
+		
+		/**
+		 * Send a ping.
+		 */
+		private synchronized void ping() {
+			myPingTime = System.nanoTime();
+			myLobby.send("[16," + (++myPing) + "]");
+		}
+		
+		/**
+		 * Record a pong, separately as well if the ping was sent during
+		 * the countdown, and send the server time.
+		 * @param thePing the number of the ping answered.
+		 */
+		private void pong(int thePing) {
+			long pingTime = myPingTime;
+			long time = System.nanoTime() - pingTime;
+			if (thePing == myPing) {
+				myPongCount.incrementAndGet();
+				myPongTotal.addAndGet(time);
+				myPongMax.accumulateAndGet(time, Math::max);
+				
+				if (pingTime - myStartTime < TimeUnit.MILLISECONDS.toNanos(COUNTDOWN_MS)) {
+					myCountdownPongCount.incrementAndGet();
+					myCountdownPongMax.accumulateAndGet(time, Math::max);
+				}
+			}
+			myLobby.send("[17," + System.currentTimeMillis() * 1000000 + "]");
+		}
+		
+		/**
+		 * Send a power-up or a death of the synthetic player.
+		 */
+		private void event() {
+			if (myRandom.nextBoolean()) {
+				myLobby.send("[11,1," + System.currentTimeMillis() + ",3,2,0]");
+			} else {
+				myLobby.send("[13,1,2000,1,5,0,1]");
+			}
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import controller.Controller;
+import controller.FleetLogin;
+import view.BotView;
+
+/**
+ * Drives a fleet of bots against a MockGameServer: every bot logs
+ * in, receives its friend list, is invited to a race by a synthetic
+ * player and follows it for a while. Prints login time, message
+ * throughput, ping round trips and the bots' own message statistics.
+ * Finally every data connection is dropped, and the time the fleet
+ * takes to reconnect is printed.
+ *
+ * The lobby pings answered during the race countdown, while the
+ * bots' timers send their [19] replies, are checked against a bound:
+ * the test fails, with exit status 1, if any round trip took longer
+ * or none was measured. Run without -Dechobot.io to check the
+ * default selector engine. The mock server runs in the same JVM, a
+ * thread per connection, so on a machine with few cores the bots'
+ * event loops wait for its threads; large fleets, or a single core,
+ * need a looser bound.
+ *
+ * Usage: MockLoadTest [bots] [seconds] [bound in ms, default 5].
+ * Thousands of bots need a few file descriptors each (ulimit -n).
+ * Run with -Dechobot.sessionCache= so the mock's tokens are not
+ * cached.
+ */
+public class MockLoadTest {
+	
+	/**
+	 * Default bound on a ping's round trip during the countdown, in
+	 * milliseconds.
+	 */
+	private final static long COUNTDOWN_PONG_BOUND_MS = 5;
+	
+	/**
+	 * Entry point.
+	 * @param theArgs the number of bots, the race length in seconds and
+	 * the bound on the countdown round trips in milliseconds.
+	 * @throws Exception if the test fails.
+	 */
+	public static void main(String... theArgs) throws Exception {
+		int count = theArgs.length > 0 ? Integer.parseInt(theArgs[0]) : 1000;
+		int seconds = theArgs.length > 1 ? Integer.parseInt(theArgs[1]) : 30;
+		long bound = theArgs.length > 2 ? Long.parseLong(theArgs[2]) : COUNTDOWN_PONG_BOUND_MS;
+		
+		MockGameServer server = new MockGameServer();
+		server.start();
+		
+		CountDownLatch ready = new CountDownLatch(count);
+		List<Controller> controllers = new ArrayList<Controller>();
+		List<Account> accounts = new ArrayList<Account>();
+		
+		for (int i = 0; i < count; i++) {
+			String email = "bot" + i + "@mock";
+			String friend = "host" + i;
+			server.addFriend(email, friend, "Host " + i);
+			accounts.add(new Account(email, "secret"));
+			MockView view = new MockView(friend, ready);
+			view.myController = new Controller(view, server.getEndpoints());
+			controllers.add(view.myController);
+		}
+		
+		// Log in, and wait for every friend list.
+		long start = System.nanoTime();
+		List<FleetLogin.Result> results = new FleetLogin(Config.LOGIN_CONCURRENCY)
+				.login(controllers, accounts, null).join();
+		long loggedIn = System.nanoTime();
+		ready.await(60, TimeUnit.SECONDS);
+		long listed = System.nanoTime();
+		
+		int failed = 0;
+		for (FleetLogin.Result result : results) {
+			failed += result.isSuccess() ? 0 : 1;
+		}
+		System.out.printf("%d bots logged in in %d ms (%d failed), friend lists after %d ms%n",
+				count - failed, millis(loggedIn - start), failed, millis(listed - start));
+		
+		// Race.
+		for (int i = 0; i < count; i++) {
+			server.invite(accounts.get(i).getEmail(), "host" + i);
+		}
+		
+		Thread.sleep(2000);
+		System.out.printf("%d races in progress%n", server.getRaceCount());
+		
+		long sent = server.getSentCount();
+		long received = server.getReceivedCount();
+		long echoes = server.getReceivedCount(3);
+		long raceStart = System.nanoTime();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		double elapsed = (System.nanoTime() - raceStart) / 1e9;
+		
+		System.out.printf("to bots: %.0f msg/s, from bots: %.0f msg/s, echoes: %.1f per bot per s%n",
+				(server.getSentCount() - sent) / elapsed, (server.getReceivedCount() - received) / elapsed,
+				(server.getReceivedCount(3) - echoes) / elapsed / Math.max(1, server.getRaceCount()));
+		System.out.printf("pongs: %d, round trip avg %.2f ms, max %.2f ms%n",
+				server.getPongCount(), server.getPongAverage(), server.getPongMax());
+		
+		boolean passed = server.getCountdownPongCount() > 0 && server.getCountdownPongMax() <= bound;
+		System.out.printf("countdown: %d pongs, round trip max %.2f ms, bound %d ms: %s; %d replies [19]%n",
+				server.getCountdownPongCount(), server.getCountdownPongMax(), bound, passed ? "passed" : "FAILED",
+				server.getReceivedCount(19));
+		System.out.println("bot side: " + MessageStats.getGlobal());
+		
+		server.endRaces();
+		Thread.sleep(500);
+		
+		// Drop every data connection and wait for the bots to return.
+		int dropped = server.dropDataConnections();
+		long dropTime = System.nanoTime();
+		while (server.getDataConnectionCount() < dropped
+				&& System.nanoTime() - dropTime < TimeUnit.SECONDS.toNanos(60)) {
+			Thread.sleep(10);
+		}
+		System.out.printf("%d of %d dropped bots reconnected after %d ms%n",
+				server.getDataConnectionCount(), dropped, millis(System.nanoTime() - dropTime));
+		
+		for (Controller controller : controllers) {
+			controller.shutdown();
+		}
+		server.stop();
+		System.exit(passed ? 0 : 1);
+	}
+	
+	/**
+	 * Convert nanoseconds to milliseconds.
+	 * @param theNanos the nanoseconds.
+	 * @return the milliseconds.
+	 */
+	private static long millis(long theNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(theNanos);
+	}
+	
+	/**
+	 * View of a simulated bot: picks its host as friend once the
+	 * friend list arrives.
+	 */
+	private static class MockView implements BotView {
+		
+		/**
+		 * The player ID of the bot's host.
+		 */
+		private String myFriend;
+		
+		/**
+		 * Counted down when the friend list arrives.
+		 */
+		private CountDownLatch myReady;
+		
+		/**
+		 * The bot's controller, set once created.
+		 */
+		private Controller myController;
+		
+		/**
+		 * Construct a new view.
+		 * @param theFriend the player ID of the bot's host.
+		 * @param theReady counted down when the friend list arrives.
+		 */
+		private MockView(String theFriend, CountDownLatch theReady) {
+			myFriend = theFriend;
+			myReady = theReady;
+		}
+		
+		@Override
+		public void showLoginAlert(String theMessage) {
+			System.err.println(theMessage);
+		}
+		
+		@Override
+		public void showMainScene() {
+			myController.setFriend(myController.findFriend(myFriend));
+			myReady.countDown();
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares resident memory and OS thread counts of simulated bots
+ * with blocking monitors in platform-thread and virtual-thread mode,
+ * and on the selector engine. Each simulated bot is a monitor with
+ * a keepalive, connected to a local server socket just as a real
+ * bot's data connection is.
+ * 
+ * Run without arguments to measure 1, 100 and 5,000 bots in every
+ * mode, each in a fresh JVM. Linux only, as the figures are read
+ * from /proc/self/status. 5,000 bots need about 10,000 file
+ * descriptors (ulimit -n).
+ */
+public class ThreadModeBenchmark {
+	
+	/**
+	 * The bot counts to measure.
+	 */
+	private final static int[] BOT_COUNTS = {1, 100, 5000};
+	
+	/**
+	 * The modes to measure: the I/O engine and the thread mode of
+	 * each, see Config.IO_ENGINE and Config.THREAD_MODE.
+	 */
+	private final static String[][] MODES = {
+		{"blocking", "platform"},
+		{"blocking", "virtual"},
+		{"selector", "platform"}
+	};
+	
+	/**
+	 * Entry point.
+	 * @param theArgs empty to run every combination, or a bot count to
+	 * measure a single one in this JVM.
+	 * @throws Exception if the benchmark fails.
+	 */
+	public static void main(String... theArgs) throws Exception {
+		if (theArgs.length == 0) {
+			runAll();
+		} else {
+			System.out.println(measure(Integer.parseInt(theArgs[0])));
+			System.exit(0);
+		}
+	}
+	
+	/**
+	 * Measure every mode and bot count, each in a child JVM.
+	 * @throws Exception if a child fails.
+	 */
+	private static void runAll() throws Exception {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		String classPath = System.getProperty("java.class.path");
+		
+		System.out.printf("%-10s %-10s %8s %12s %12s%n", "io", "threads", "bots", "rss (MB)", "os threads");
+		for (String[] mode : MODES) {
+			for (int count : BOT_COUNTS) {
+				Process child = new ProcessBuilder(java, "-Dechobot.io=" + mode[0], "-Dechobot.threads=" + mode[1],
+						"-cp", classPath, ThreadModeBenchmark.class.getName(), String.valueOf(count))
+						.redirectError(ProcessBuilder.Redirect.INHERIT)
+						.start();
+				BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream()));
+				String result = reader.readLine();
+				child.waitFor();
+				System.out.printf("%-10s %-10s %8d %s%n", mode[0], mode[1], count, result);
+			}
+		}
+	}
+	
+	/**
+	 * Start the given number of simulated bots and measure the process.
+	 * @param theCount the number of bots.
+	 * @return the formatted memory and thread figures.
+	 * @throws Exception if the bots cannot be started.
+	 */
+	private static String measure(int theCount) throws Exception {
+		ServerSocket server = new ServerSocket(0, theCount, InetAddress.getLoopbackAddress());
+		List<Socket> accepted = new ArrayList<Socket>();
+		Thread acceptor = new Thread(() -> {
+			try {
+				for (int i = 0; i < theCount; i++) {
+					accepted.add(server.accept());
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+		acceptor.start();
+		
+		List<Monitor> bots = new ArrayList<Monitor>();
+		for (int i = 0; i < theCount; i++) {
+			Monitor bot = new SimulatedBot(server.getLocalPort());
+			bot.start("bot-monitor");
+			new Keepalive(bot).start();
+			bots.add(bot);
+		}
+		acceptor.join();
+		
+		// Let every bot reach its blocking read and sleep.
+		Thread.sleep(2000);
+		System.gc();
+		Thread.sleep(500);
+		
+		long rss = readStatus("VmRSS:");
+		long threads = readStatus("Threads:");
+		return String.format("%12.1f %12d", rss / 1024.0, threads);
+	}
+	
+	/**
+	 * Read a numeric field from /proc/self/status.
+	 * @param theField the field name, including the colon.
+	 * @return the field's value.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private static long readStatus(String theField) throws IOException {
+		for (String line : Files.readAllLines(new File("/proc/self/status").toPath())) {
+			if (line.startsWith(theField)) {
+				return Long.parseLong(line.substring(theField.length()).trim().split("\\s+")[0]);
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * A bot that reads its socket and ignores what it reads.
+	 */
+	private static class SimulatedBot extends Monitor {
+		
+		/**
+		 * Connect a simulated bot to the local server.
+		 * @param thePort the server's port.
+		 */
+		public SimulatedBot(int thePort) {
+			super(null, InetAddress.getLoopbackAddress().getHostAddress(), thePort, SocketProfile.DATA);
+		}
+		
+		@Override
+		protected void processSocketData(JsonCursor theData, PrintWriter theWriter) {
+		}
+	}
+}
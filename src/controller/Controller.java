@@ -1,22 +1,27 @@
 package controller;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import model.BotSnapshot;
 import model.Client;
+import model.Endpoints;
 import model.Friend;
-import view.EchoBotGUI;
+import view.BotView;
 
 /**
  * Controller class that communicates with
- * both the GUI and the Client.
+ * both the view and the Client.
  * @author Damiene Stewart
  */
 public class Controller {
 	
 	/**
-	 * A reference to the GUI class (view).
+	 * A reference to the view.
 	 */
-	private EchoBotGUI myGUI;
+	private BotView myGUI;
 	
 	/**
 	 * A reference to the Client class (model).
@@ -30,26 +35,46 @@ public class Controller {
 	
 	/**
 	 * Constructs an instance of the controller class.
-	 * @param theGUI the GUI reference.
+	 * @param theGUI the view reference.
 	 */
-	public Controller(EchoBotGUI theGUI) {
+	public Controller(BotView theGUI) {
+		this(theGUI, Endpoints.getDefault());
+	}
+	
+	/**
+	 * Constructs an instance of the controller class whose
+	 * client talks to the given servers.
+	 * @param theGUI the view reference.
+	 * @param theEndpoints the servers to talk to.
+	 */
+	public Controller(BotView theGUI, Endpoints theEndpoints) {
 		myGUI = theGUI;
-		myClient = new Client(this);
+		myClient = new Client(this, theEndpoints);
 		myClientLoggedInStatus = false;
 	}
 	
 	/**
-	 * Login function initiated from the GUI.
+	 * Login function initiated from the GUI. Does not block.
 	 * @param theEmail the bot's email.
 	 * @param thePassword the bot's password.
+	 * @return completes with true if login was successful.
 	 */
-	public void login(String theEmail, String thePassword) {
-		if (myClient.login(theEmail, thePassword)) {
-			myClientLoggedInStatus = true;
-		} else {
-			myClientLoggedInStatus = false;
-			myGUI.showLoginAlert(myClient.getLoginErrorMessage());
-		}
+	public CompletableFuture<Boolean> login(String theEmail, String thePassword) {
+		return myClient.loginAsync(theEmail, thePassword).thenApply(success -> {
+			myClientLoggedInStatus = success;
+			if (!success) {
+				myGUI.showLoginAlert(myClient.getLoginErrorMessage());
+			}
+			return success;
+		});
+	}
+	
+	/**
+	 * Return the message describing the last login failure.
+	 * @return the login error message.
+	 */
+	public String getLoginErrorMessage() {
+		return myClient.getLoginErrorMessage();
 	}
 	
 	/**
@@ -67,6 +92,23 @@ public class Controller {
 		return myClientLoggedInStatus;
 	}
 	
+	/**
+	 * Returns true once the bot has received its friend list.
+	 * @return true if the bot is ready to be given friends.
+	 */
+	public boolean hasFriendList() {
+		return myClient.hasFriendList();
+	}
+	
+	/**
+	 * Copy the bot's current state into a snapshot.
+	 * @param theSnapshot the snapshot to update.
+	 * @param theNow the current System.nanoTime().
+	 */
+	public void snapshot(BotSnapshot theSnapshot, long theNow) {
+		theSnapshot.update(myClient, theNow);
+	}
+	
 	/**
 	 * Toggle whether the user has progressed to a logged in stage or not.
 	 * @param theLoggedInStatus true if user has successfully logged in, false otherwise.
@@ -87,6 +129,15 @@ public class Controller {
 		return myClient.getFriendList();
 	}
 	
+	/**
+	 * Look up a friend by player ID or user name.
+	 * @param theIDOrName the player ID or user name.
+	 * @return the friend, or null if there is none.
+	 */
+	public Friend findFriend(String theIDOrName) {
+		return myClient.getFriendDirectory().find(theIDOrName);
+	}
+	
 	/**
 	 * Set the friend that the bot should listen to
 	 * and respond to requests from.
@@ -96,6 +147,36 @@ public class Controller {
 		myClient.setMyFriend(theFriend);
 	}
 
+	/**
+	 * Set the friends that the bot should accept requests
+	 * from, for example a whole team.
+	 * @param theFriends the friends.
+	 */
+	public void setFriends(Collection<Friend> theFriends) {
+		myClient.setAuthorisedFriends(Client.authorise(theFriends));
+	}
+	
+	/**
+	 * Also accept requests from another friend.
+	 * @param theFriend the friend.
+	 */
+	public void addFriend(Friend theFriend) {
+		myClient.addAuthorisedFriend(theFriend);
+	}
+	
+	/**
+	 * Set the friends that every bot in a list should accept
+	 * requests from. The bots share one copy of the set.
+	 * @param theControllers the bots' controllers.
+	 * @param theFriends the friends.
+	 */
+	public static void setFriends(List<Controller> theControllers, Collection<Friend> theFriends) {
+		Map<String, Friend> friends = Client.authorise(theFriends);
+		for (Controller controller : theControllers) {
+			controller.myClient.setAuthorisedFriends(friends);
+		}
+	}
+	
 	/**
 	 * Initiate shutdown procedure.
 	 */
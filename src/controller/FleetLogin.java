@@ -0,0 +1,220 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import model.Account;
+import model.BotThreads;
+
+/**
+ * Logs a fleet of bots in concurrently. At most a fixed number of
+ * logins are in flight at once, so the login server is not flooded,
+ * and each bot's data monitor is started as soon as its own login
+ * succeeds rather than when the whole fleet is done.
+ */
+public class FleetLogin {
+	
+	/**
+	 * Permits for the logins in flight.
+	 */
+	private Semaphore myPermits;
+	
+	/**
+	 * Construct a new fleet login.
+	 * @param theConcurrency the maximum number of logins in flight.
+	 */
+	public FleetLogin(int theConcurrency) {
+		if (theConcurrency <= 0)
+			throw new IllegalArgumentException("The concurrency must be positive.");
+		myPermits = new Semaphore(theConcurrency);
+	}
+	
+	/**
+	 * Log every account in with its controller, in order.
+	 * @param theControllers the bots' controllers.
+	 * @param theAccounts the accounts, one per controller.
+	 * @param theListener told about each result as it arrives. Can be null.
+	 * @return completes with the results, in the order of the accounts.
+	 */
+	public CompletableFuture<List<Result>> login(List<Controller> theControllers, List<Account> theAccounts,
+			Consumer<Result> theListener) {
+		if (theControllers.size() != theAccounts.size())
+			throw new IllegalArgumentException("Every account needs a controller.");
+		
+		List<CompletableFuture<Result>> results = new ArrayList<CompletableFuture<Result>>();
+		for (int i = 0; i < theAccounts.size(); i++) {
+			results.add(new CompletableFuture<Result>());
+		}
+		
+		BotThreads.start(() -> {
+			for (int i = 0; i < theAccounts.size(); i++) {
+				try {
+					myPermits.acquire();
+				} catch (InterruptedException e) {
+					for (int j = i; j < theAccounts.size(); j++) {
+						results.get(j).complete(new Result(theControllers.get(j), theAccounts.get(j), false,
+								"Login was interrupted.", 0));
+					}
+					return;
+				}
+				login(theControllers.get(i), theAccounts.get(i), results.get(i), theListener);
+			}
+		}, "fleet-login");
+		
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+			List<Result> list = new ArrayList<Result>();
+			for (CompletableFuture<Result> result : results) {
+				list.add(result.join());
+			}
+			return list;
+		});
+	}
+	
+	/**
+	 * Log one account in, holding a permit until it is done, even
+	 * if the login throws instead of failing its future.
+	 * @param theController the bot's controller.
+	 * @param theAccount the account.
+	 * @param theResult completed with the result.
+	 * @param theListener told about the result. Can be null.
+	 */
+	private void login(Controller theController, Account theAccount, CompletableFuture<Result> theResult,
+			Consumer<Result> theListener) {
+		long start = System.nanoTime();
+		
+		CompletableFuture<Boolean> login = null;
+		try {
+			login = theController.login(theAccount.getEmail(), theAccount.getPassword());
+		} catch (RuntimeException e) {
+			// Failed before the login was under way; reported, and the
+			// permit released, like any other failure below.
+			login = CompletableFuture.failedFuture(e);
+		}
+		
+		login.whenComplete((success, error) -> {
+			myPermits.release();
+			long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			String message = null;
+			
+			if (error != null) {
+				error.printStackTrace();
+				message = String.valueOf(error.getMessage());
+			} else if (!success) {
+				message = theController.getLoginErrorMessage();
+			} else {
+				try {
+					theController.startDataMonitor();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+					message = "Could not start the data monitor: " + e.getMessage();
+				}
+			}
+			
+			Result result = new Result(theController, theAccount, message == null, message, time);
+			try {
+				if (theListener != null) {
+					theListener.accept(result);
+				}
+			} finally {
+				theResult.complete(result);
+			}
+		});
+	}
+	
+	/**
+	 * The outcome of one account's login.
+	 */
+	public static class Result {
+		
+		/**
+		 * The bot's controller.
+		 */
+		private Controller myController;
+		
+		/**
+		 * The account.
+		 */
+		private Account myAccount;
+		
+		/**
+		 * Whether the bot logged in and its data monitor started.
+		 */
+		private boolean mySuccess;
+		
+		/**
+		 * Why the login failed, or null.
+		 */
+		private String myMessage;
+		
+		/**
+		 * How long the login took, in milliseconds.
+		 */
+		private long myTime;
+		
+		/**
+		 * Construct a new result.
+		 * @param theController the bot's controller.
+		 * @param theAccount the account.
+		 * @param theSuccess whether the login succeeded.
+		 * @param theMessage why the login failed, or null.
+		 * @param theTime how long the login took, in milliseconds.
+		 */
+		private Result(Controller theController, Account theAccount, boolean theSuccess, String theMessage,
+				long theTime) {
+			myController = theController;
+			myAccount = theAccount;
+			mySuccess = theSuccess;
+			myMessage = theMessage;
+			myTime = theTime;
+		}
+		
+		/**
+		 * Return the bot's controller.
+		 * @return the controller.
+		 */
+		public Controller getController() {
+			return myController;
+		}
+		
+		/**
+		 * Return the account.
+		 * @return the account.
+		 */
+		public Account getAccount() {
+			return myAccount;
+		}
+		
+		/**
+		 * Returns true if the bot logged in and its data monitor started.
+		 * @return true on success.
+		 */
+		public boolean isSuccess() {
+			return mySuccess;
+		}
+		
+		/**
+		 * Return why the login failed.
+		 * @return the reason, or null on success.
+		 */
+		public String getMessage() {
+			return myMessage;
+		}
+		
+		/**
+		 * Return how long the login took.
+		 * @return the time in milliseconds.
+		 */
+		public long getTime() {
+			return myTime;
+		}
+		
+		@Override
+		public String toString() {
+			return myAccount + (mySuccess ? ": logged in" : ": " + myMessage) + " (" + myTime + " ms)";
+		}
+	}
+}
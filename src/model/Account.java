@@ -0,0 +1,48 @@
+package model;
+
+/**
+ * The login details of a bot's account.
+ */
+public class Account {
+	
+	/**
+	 * The account's email address.
+	 */
+	private String myEmail;
+	
+	/**
+	 * The account's password.
+	 */
+	private String myPassword;
+	
+	/**
+	 * Construct a new account.
+	 * @param theEmail the email address.
+	 * @param thePassword the password.
+	 */
+	public Account(String theEmail, String thePassword) {
+		myEmail = theEmail;
+		myPassword = thePassword;
+	}
+	
+	/**
+	 * Return the account's email address.
+	 * @return the email address.
+	 */
+	public String getEmail() {
+		return myEmail;
+	}
+	
+	/**
+	 * Return the account's password.
+	 * @return the password.
+	 */
+	public String getPassword() {
+		return myPassword;
+	}
+	
+	@Override
+	public String toString() {
+		return myEmail;
+	}
+}
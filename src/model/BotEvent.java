@@ -0,0 +1,137 @@
+package model;
+
+/**
+ * Something that happened to a bot, as published on the EventBus.
+ * The bus preallocates its events and reuses them, so a handler
+ * must copy what it needs before it returns.
+ */
+public class BotEvent {
+	
+	/**
+	 * The kinds of event.
+	 */
+	public enum Type {
+		
+		/**
+		 * A login finished. The value is 1 if it succeeded, 0 if
+		 * not, and the text is the reason it failed.
+		 */
+		LOGIN,
+		
+		/**
+		 * The friend list arrived. The value is the number of
+		 * friends.
+		 */
+		FRIEND_LIST,
+		
+		/**
+		 * A game invite arrived. The value is 1 if it was accepted,
+		 * 0 if not, and the text is the inviter's player ID.
+		 */
+		INVITE,
+		
+		/**
+		 * The race in the bot's lobby started.
+		 */
+		RACE_START,
+		
+		/**
+		 * The bot left its lobby.
+		 */
+		RACE_END,
+		
+		/**
+		 * The bot's status was set. The value is the status.
+		 */
+		STATUS
+	}
+	
+	/**
+	 * The kind of event.
+	 */
+	private Type myType;
+	
+	/**
+	 * The bot the event happened to.
+	 */
+	private Client myClient;
+	
+	/**
+	 * A number whose meaning depends on the type.
+	 */
+	private int myValue;
+	
+	/**
+	 * A text whose meaning depends on the type. Can be null.
+	 */
+	private String myText;
+	
+	/**
+	 * The System.nanoTime() at which the event was published.
+	 */
+	private long myTime;
+	
+	/**
+	 * Set every field of the event.
+	 * @param theType the kind of event.
+	 * @param theClient the bot.
+	 * @param theValue the number.
+	 * @param theText the text, or null.
+	 * @param theTime the time of publication.
+	 */
+	void set(Type theType, Client theClient, int theValue, String theText, long theTime) {
+		myType = theType;
+		myClient = theClient;
+		myValue = theValue;
+		myText = theText;
+		myTime = theTime;
+	}
+	
+	/**
+	 * Copy every field of another event.
+	 * @param theEvent the event to copy.
+	 */
+	void copy(BotEvent theEvent) {
+		set(theEvent.myType, theEvent.myClient, theEvent.myValue, theEvent.myText, theEvent.myTime);
+	}
+	
+	/**
+	 * Returns the kind of event.
+	 * @return the type.
+	 */
+	public Type getType() {
+		return myType;
+	}
+	
+	/**
+	 * Returns the bot the event happened to.
+	 * @return the client.
+	 */
+	public Client getClient() {
+		return myClient;
+	}
+	
+	/**
+	 * Returns the number carried by the event.
+	 * @return the value, see Type.
+	 */
+	public int getValue() {
+		return myValue;
+	}
+	
+	/**
+	 * Returns the text carried by the event.
+	 * @return the text, see Type. Can be null.
+	 */
+	public String getText() {
+		return myText;
+	}
+	
+	/**
+	 * Returns the time at which the event was published.
+	 * @return the System.nanoTime() of publication.
+	 */
+	public long getTime() {
+		return myTime;
+	}
+}
@@ -0,0 +1,171 @@
+package model;
+
+/**
+ * A copy of what a bot is doing, taken from its counters at one
+ * moment. The dashboard keeps one per bot and updates it in place
+ * each frame, so the UI reads plain fields rather than reacting to
+ * each event.
+ */
+public class BotSnapshot {
+	
+	/**
+	 * Shortest interval over which the message rate is measured, in
+	 * nanoseconds, so the rate does not jump from frame to frame.
+	 */
+	private final static long RATE_INTERVAL_NS = 1000000000L;
+	
+	/**
+	 * The bot's email address.
+	 */
+	private String myEmail;
+	
+	/**
+	 * The bot's online status.
+	 */
+	private int myStatus;
+	
+	/**
+	 * Whether the data connection is up.
+	 */
+	private boolean myConnected;
+	
+	/**
+	 * Whether the data connection is being restored.
+	 */
+	private boolean myReconnecting;
+	
+	/**
+	 * The stage of the bot's visit to a lobby.
+	 */
+	private LobbyState myLobbyState;
+	
+	/**
+	 * Messages processed per second.
+	 */
+	private double myMessageRate;
+	
+	/**
+	 * Round trip to the server in milliseconds, or -1.
+	 */
+	private double myRoundTrip;
+	
+	/**
+	 * What last went wrong. Can be null.
+	 */
+	private String myLastError;
+	
+	/**
+	 * Messages processed when the rate was last measured.
+	 */
+	private long myRateCount;
+	
+	/**
+	 * The System.nanoTime() at which the rate was last measured,
+	 * or 0 before the first update.
+	 */
+	private long myRateTime;
+	
+	/**
+	 * Construct an empty snapshot.
+	 */
+	public BotSnapshot() {
+		myLobbyState = LobbyState.IDLE;
+		myRoundTrip = -1;
+	}
+	
+	/**
+	 * Copy the bot's current state. Does not block.
+	 * @param theClient the bot.
+	 * @param theNow the current System.nanoTime().
+	 */
+	public void update(Client theClient, long theNow) {
+		myEmail = theClient.getEmail();
+		myStatus = theClient.getStatus();
+		myConnected = theClient.isDataConnected();
+		myReconnecting = theClient.isReconnecting();
+		myLobbyState = theClient.getLobbyState();
+		myLastError = theClient.getLastError();
+		
+		// The lobby's round trip while racing, the data socket's otherwise.
+		ClockSync clock = theClient.getClockSync();
+		double lobbyRoundTrip = clock == null ? -1 : clock.getRoundTripTime();
+		myRoundTrip = myLobbyState != LobbyState.IDLE && lobbyRoundTrip >= 0
+				? lobbyRoundTrip : theClient.getKeepaliveRoundTrip();
+		
+		long count = theClient.getParsedMessageCount();
+		if (myRateTime == 0) {
+			myRateCount = count;
+			myRateTime = theNow;
+		} else if (theNow - myRateTime >= RATE_INTERVAL_NS) {
+			myMessageRate = (count - myRateCount) * 1e9 / (theNow - myRateTime);
+			myRateCount = count;
+			myRateTime = theNow;
+		}
+	}
+	
+	/**
+	 * Returns the bot's email address.
+	 * @return the email address, or null before login.
+	 */
+	public String getEmail() {
+		return myEmail;
+	}
+	
+	/**
+	 * Returns the bot's online status.
+	 * @return the status.
+	 */
+	public int getStatus() {
+		return myStatus;
+	}
+	
+	/**
+	 * Returns true if the data connection was up.
+	 * @return true if connected.
+	 */
+	public boolean isConnected() {
+		return myConnected;
+	}
+	
+	/**
+	 * Returns true if the data connection was being restored.
+	 * @return true if reconnecting.
+	 */
+	public boolean isReconnecting() {
+		return myReconnecting;
+	}
+	
+	/**
+	 * Returns the stage of the bot's visit to a lobby.
+	 * @return the lobby state.
+	 */
+	public LobbyState getLobbyState() {
+		return myLobbyState;
+	}
+	
+	/**
+	 * Returns the number of messages the bot processed per second,
+	 * measured over at least a second.
+	 * @return the message rate.
+	 */
+	public double getMessageRate() {
+		return myMessageRate;
+	}
+	
+	/**
+	 * Returns the round trip to the lobby while the bot is in one,
+	 * to the data server otherwise.
+	 * @return the round trip in milliseconds, or -1 if none was measured.
+	 */
+	public double getRoundTrip() {
+		return myRoundTrip;
+	}
+	
+	/**
+	 * Returns what last went wrong with the bot.
+	 * @return the last error, or null.
+	 */
+	public String getLastError() {
+		return myLastError;
+	}
+}
@@ -0,0 +1,80 @@
+package model;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads used by the monitors and lobby joins.
+ * The thread mode is read from Config: "platform" gives each
+ * task an ordinary thread, "virtual" runs them on virtual
+ * threads so that the blocking reads and sleeps no longer tie
+ * up an OS thread each. A custom factory may also be plugged in.
+ */
+public class BotThreads {
+	
+	/**
+	 * The factory in use. Volatile, as it may be replaced while
+	 * other threads start tasks.
+	 */
+	private static volatile ThreadFactory myFactory = createFactory(Config.THREAD_MODE);
+	
+	/**
+	 * Not instantiable.
+	 */
+	private BotThreads() {
+	}
+	
+	/**
+	 * Start a task on a new thread from the current factory.
+	 * @param theTask the task to run.
+	 * @param theName the name to give the thread.
+	 * @return the started thread.
+	 */
+	public static Thread start(Runnable theTask, String theName) {
+		Thread thread = myFactory.newThread(theTask);
+		thread.setName(theName);
+		thread.start();
+		return thread;
+	}
+	
+	/**
+	 * Replace the factory used for new threads.
+	 * @param theFactory the factory to use.
+	 */
+	public static void setFactory(ThreadFactory theFactory) {
+		if (theFactory == null)
+			throw new IllegalArgumentException("The thread factory must not be null.");
+		myFactory = theFactory;
+	}
+	
+	/**
+	 * Returns the factory used for new threads.
+	 * @return the thread factory.
+	 */
+	public static ThreadFactory getFactory() {
+		return myFactory;
+	}
+	
+	/**
+	 * Create the factory for a thread mode. Virtual threads are
+	 * looked up reflectively so the bot still runs on runtimes
+	 * without them, falling back to platform threads.
+	 * @param theMode "platform" or "virtual".
+	 * @return the thread factory.
+	 */
+	public static ThreadFactory createFactory(String theMode) {
+		if ("virtual".equals(theMode)) {
+			try {
+				Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+				Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+				return (ThreadFactory) factory.invoke(builder);
+			} catch (ReflectiveOperationException e) {
+				System.err.println("Virtual threads are not available, using platform threads.");
+			}
+		} else if (!"platform".equals(theMode)) {
+			throw new IllegalArgumentException("The thread mode: " + theMode + " is invalid.");
+		}
+		
+		return Thread::new;
+	}
+}
@@ -0,0 +1,156 @@
+package model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Output stream that writes straight to a non-blocking
+ * socket channel, and never waits for it. Bytes the send
+ * buffer cannot take are kept in a backlog, and the event
+ * loop writes them once the channel is writable again.
+ * A peer that stops reading until the backlog grows past
+ * Config.OUTBOUND_MAX_BACKLOG_BYTES is disconnected.
+ */
+class ChannelOutputStream extends OutputStream {
+	
+	/**
+	 * The monitor that owns the channel, closed if the backlog
+	 * grows too large.
+	 */
+	private Monitor myMonitor;
+	
+	/**
+	 * The channel to write to.
+	 */
+	private SocketChannel myChannel;
+	
+	/**
+	 * Bytes waiting for the channel to become writable, from
+	 * the start of the buffer up to its position.
+	 */
+	private ByteBuffer myBacklog;
+	
+	/**
+	 * The channel's key with the event loop's selector, or null
+	 * until it is registered.
+	 */
+	private SelectionKey myKey;
+	
+	/**
+	 * Construct a new channel output stream.
+	 * @param theMonitor the monitor that owns the channel.
+	 * @param theChannel the channel to write to.
+	 */
+	public ChannelOutputStream(Monitor theMonitor, SocketChannel theChannel) {
+		myMonitor = theMonitor;
+		myChannel = theChannel;
+		myBacklog = ByteBuffer.allocate(0);
+	}
+	
+	@Override
+	public void write(int theByte) throws IOException {
+		write(new byte[] {(byte) theByte}, 0, 1);
+	}
+	
+	/**
+	 * Write what the channel takes now and keep the rest for the
+	 * event loop. Closes the monitor if the backlog would grow past
+	 * its limit.
+	 * @throws IOException if the write fails or the backlog is full.
+	 */
+	@Override
+	public void write(byte[] theBytes, int theOffset, int theLength) throws IOException {
+		synchronized (this) {
+			ByteBuffer buffer = ByteBuffer.wrap(theBytes, theOffset, theLength);
+			
+			// Bytes may only go straight out if none are waiting ahead of them.
+			if (myBacklog.position() == 0) {
+				myChannel.write(buffer);
+				if (!buffer.hasRemaining()) {
+					return;
+				}
+			}
+			
+			int backlog = myBacklog.position() + buffer.remaining();
+			if (backlog <= Config.OUTBOUND_MAX_BACKLOG_BYTES) {
+				if (backlog > myBacklog.capacity()) {
+					ByteBuffer larger = ByteBuffer.allocate(Math.min(Config.OUTBOUND_MAX_BACKLOG_BYTES,
+							Math.max(backlog, myBacklog.capacity() * 2)));
+					myBacklog.flip();
+					myBacklog = larger.put(myBacklog);
+				}
+				myBacklog.put(buffer);
+				watchWritable(true);
+				return;
+			}
+		}
+		
+		myMonitor.closed();
+		throw new IOException("Send backlog exceeded " + Config.OUTBOUND_MAX_BACKLOG_BYTES + " bytes.");
+	}
+	
+	/**
+	 * Called by the event loop when the channel is writable. Writes
+	 * as much of the backlog as the channel takes, and stops watching
+	 * for writability once it is empty.
+	 * @throws IOException if the write fails.
+	 */
+	synchronized void writeBacklog() throws IOException {
+		myBacklog.flip();
+		try {
+			myChannel.write(myBacklog);
+		} finally {
+			myBacklog.compact();
+		}
+		
+		if (myBacklog.position() == 0) {
+			watchWritable(false);
+		}
+	}
+	
+	/**
+	 * Called by the event loop once the channel is registered with
+	 * its selector.
+	 * @param theKey the channel's key.
+	 */
+	synchronized void attach(SelectionKey theKey) {
+		myKey = theKey;
+		if (myBacklog.position() > 0) {
+			watchWritable(true);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		myChannel.close();
+	}
+	
+	/**
+	 * Start or stop watching the channel for writability, waking the
+	 * event loop so that a change made from another thread is seen.
+	 * @param theWatch true to watch the channel.
+	 */
+	private void watchWritable(boolean theWatch) {
+		SelectionKey key = myKey;
+		if (key == null) {
+			return;
+		}
+		
+		try {
+			int ops = key.interestOps();
+			int watched = theWatch ? ops | SelectionKey.OP_WRITE : ops & ~SelectionKey.OP_WRITE;
+			if (watched != ops) {
+				key.interestOps(watched);
+				if (theWatch) {
+					key.selector().wakeup();
+				}
+			}
+		} catch (CancelledKeyException e) {
+			// The channel was closed; the event loop ends the monitor.
+		}
+	}
+}
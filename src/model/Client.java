@@ -1,21 +1,15 @@
 package model;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.MalformedURLException;
-import java.net.ProtocolException;
-import java.net.URL;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
-
-import javax.net.ssl.HttpsURLConnection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.json.JSONArray;
-import org.json.JSONObject;
 
 import controller.Controller;
 
@@ -37,6 +31,38 @@ public class Client {
 	 */
 	private String myToken;
 	
+	/**
+	 * The bot's email address, kept to log in again if a cached
+	 * session is rejected.
+	 */
+	private String myEmail;
+	
+	/**
+	 * The bot's password.
+	 */
+	private String myPassword;
+	
+	/**
+	 * Whether the data server refused the login token, so the bot
+	 * has to log in again before it reconnects.
+	 */
+	private volatile boolean myTokenRejected;
+	
+	/**
+	 * Whether the friend list has been received since the login.
+	 */
+	private volatile boolean myLoggedIn;
+	
+	/**
+	 * Duration of the last login in nanoseconds, or -1.
+	 */
+	private volatile long myLoginTime;
+	
+	/**
+	 * Restores the data connection when it is lost.
+	 */
+	private ReconnectEngine myReconnect;
+	
 	/**
 	 * Stores a string describing any login
 	 * errors that may have occurred.
@@ -44,9 +70,10 @@ public class Client {
 	private String myLoginErrorMessage;
 	
 	/**
-	 * The lobby status.
+	 * Describes the last thing that went wrong with the bot's
+	 * connections or login. Can be null.
 	 */
-	private boolean myLobbyStatus;
+	private volatile String myLastError;
 	
 	/**
 	 * The online status of the bot.
@@ -54,94 +81,293 @@ public class Client {
 	private int myStatus;
 	
 	/**
-	 * The friend to accept requests from.
+	 * Whether the status has been set, and so has to be sent again
+	 * after a reconnect.
+	 */
+	private boolean myStatusSet;
+	
+	/**
+	 * The friends to accept requests from, by player ID. Never
+	 * modified, only replaced, so it can be shared between bots.
 	 */
-	private Friend myFriend;
+	private volatile Map<String, Friend> myAuthorised;
 	
 	/**
-	 * The friend list.
+	 * The friend whose race the bot joined last, or the only
+	 * friend to accept requests from.
 	 */
-	private ArrayList<Friend> myFriendList;
+	private volatile Friend myFriend;
+	
+	/**
+	 * The friend list, indexed by player ID.
+	 */
+	private FriendDirectory myFriends;
 	
 	/**
 	 * The controller for this model.
 	 */
 	private Controller myController;
 	
+	/**
+	 * The servers the bot talks to.
+	 */
+	private Endpoints myEndpoints;
+	
 	/**
 	 * The data monitoring runnable task..
 	 */
-	private Runnable myDataMonitor;
+	private volatile Runnable myDataMonitor;
 
 	/**
-	 * The game lobby monitoring task.
+	 * The game lobby monitoring task of the current or last lobby.
+	 * Its state tells whether the bot is in a lobby; a new one only
+	 * replaces it once it is IDLE.
+	 */
+	private AtomicReference<GameLobbyMonitor> myGameLobbyMonitor;
+	
+	/**
+	 * Whether the bot has been shut down. No connection is made
+	 * once it is set.
+	 */
+	private volatile boolean myShutdown;
+	
+	/**
+	 * Message statistics of the monitors already replaced, so that
+	 * the bot's totals do not start over with each new monitor.
+	 */
+	private MessageStats myRetiredStats;
+	
+	/**
+	 * Messages parsed by the monitors already replaced.
 	 */
-	private Runnable myGameLobbyMonitor;
+	private AtomicLong myRetiredParsed;
+	
+	/**
+	 * Messages skipped by the monitors already replaced.
+	 */
+	private AtomicLong myRetiredSkipped;
+	
+	/**
+	 * Messages sent by the monitors already replaced.
+	 */
+	private AtomicLong myRetiredSent;
 	
 	/**
 	 * Constructs a new client object.
 	 */
 	public Client(Controller theController) {
+		this(theController, Endpoints.getDefault());
+	}
+	
+	/**
+	 * Constructs a new client object talking to the given servers.
+	 * @param theController the controller.
+	 * @param theEndpoints the servers to talk to.
+	 */
+	public Client(Controller theController, Endpoints theEndpoints) {
+		myEndpoints = theEndpoints;
 		myID = myToken = "Not present";
+		myLoginTime = -1;
 		myStatus = 3;
-		myLobbyStatus = false;
 		myLoginErrorMessage = "";
 		myFriend = null;
+		myAuthorised = Collections.emptyMap();
 		myDataMonitor = new DataMonitor(this);
-		myFriendList = new ArrayList<Friend>();
+		myReconnect = new ReconnectEngine(this);
+		myGameLobbyMonitor = new AtomicReference<GameLobbyMonitor>();
+		myRetiredStats = new MessageStats(false);
+		myRetiredParsed = new AtomicLong();
+		myRetiredSkipped = new AtomicLong();
+		myRetiredSent = new AtomicLong();
+		myFriends = new FriendDirectory();
 		myController = theController;
+		
+		MetricsServer metrics = MetricsServer.getInstance();
+		if (metrics != null) {
+			metrics.register(this);
+		}
 	}
 	
 	/**
 	 * Login and retrieve the bot's ID and Login token as
 	 * these are necessary for subsequent interactions with 
-	 * server.
+	 * server. Blocks until the server has answered.
 	 * @param theEmailAddress the bot's email address.
 	 * @param thePassword the bot's password.
 	 * @return true if login was successful.
 	 */
 	public boolean login(String theEmail, String thePassword) {
-		URL host = null;
-		HttpsURLConnection con = null;
+		return loginAsync(theEmail, thePassword).join();
+	}
 		
-		try {
-			host = new URL(Config.GAME_HTTPS_ADDRESS);
-			con = (HttpsURLConnection) host.openConnection();
-			
-			con = configureConnection(con);
-			
-			sendLoginRequest(new DataOutputStream(con.getOutputStream()), 
-					configureLoginJSONData(theEmail, thePassword));
+	/**
+	 * Login without blocking. A session cached by an earlier run is
+	 * used if there is one, otherwise the bot logs in over HTTPS.
+	 * The bot's ID and login token are set before the returned
+	 * future completes.
+	 * @param theEmail the bot's email address.
+	 * @param thePassword the bot's password.
+	 * @return completes with true if login was successful.
+	 */
+	public CompletableFuture<Boolean> loginAsync(String theEmail, String thePassword) {
+		myEmail = theEmail;
+		myPassword = thePassword;
+		long start = System.nanoTime();
+		
+		SessionCache cache = SessionCache.getInstance();
+		SessionCache.Session session = cache == null ? null : cache.get(theEmail);
+		
+		if (session != null) {
+			myID = session.getID();
+			myToken = session.getToken();
+			myLoginTime = System.nanoTime() - start;
+			return CompletableFuture.completedFuture(loginFinished(true, null));
+		}
+		
+		return freshLogin(theEmail, thePassword);
+	}
+	
+	/**
+	 * Login over HTTPS and cache the new session.
+	 * @param theEmail the bot's email address.
+	 * @param thePassword the bot's password.
+	 * @return completes with true if login was successful.
+	 */
+	private CompletableFuture<Boolean> freshLogin(String theEmail, String thePassword) {
+		long start = System.nanoTime();
+		
+		return myEndpoints.getLoginClient().login(theEmail, thePassword)
+				.handle((responseData, error) -> {
+					myLoginTime = System.nanoTime() - start;
+					
+					if (error != null) {
+						error.printStackTrace();
+						myLoginErrorMessage = "Could not reach the login server (" + theEmail + ").";
+						return loginFinished(false, "Could not reach the login server.");
+					}
 			
-			JSONObject responseData = readLoginResponse(con.getInputStream());
+					// TODO Extend to incorporate error messages from server.
+					if (responseData.getInt("m") == 3) {
+						if (responseData.has("a") && responseData.has("p")) {
+							myID = responseData.getString("p");
+							myToken = responseData.getString("a");
+							
+							SessionCache cache = SessionCache.getInstance();
+							if (cache != null) {
+								cache.put(theEmail, myID, myToken);
+							}
+							return loginFinished(true, null);
+						} else {
+							myLoginErrorMessage = "Bad email or password (" + theEmail + ").";
+							return loginFinished(false, "Bad email or password.");
+						}
+					}
+					return loginFinished(false, "Login refused.");
+				});
+	}
+	
+	/**
+	 * Publish the outcome of a login on the event bus. The text of a
+	 * failure names the account and the reason only, as every
+	 * subscriber receives it.
+	 * @param theSuccess whether the login succeeded.
+	 * @param theReason why the login failed, naming no credentials,
+	 * or null if it succeeded.
+	 * @return theSuccess.
+	 */
+	private boolean loginFinished(boolean theSuccess, String theReason) {
+		if (!theSuccess) {
+			myLastError = theReason;
+		}
+		EventBus.getInstance().publish(BotEvent.Type.LOGIN, this, theSuccess ? 1 : 0,
+				theSuccess ? null : myEmail + ": " + theReason);
+		return theSuccess;
+	}
+	
+	/**
+	 * Called by the data monitor once the server has accepted the
+	 * login token. Restores the bot's status, which may have been
+	 * set before the connection was made or while it was lost.
+	 */
+	void sessionAccepted() {
+		myReconnect.connectionRestored();
+		
+		if (myStatusSet) {
+			((DataMonitor) myDataMonitor).sendStatusUpdate(myStatus);
+		}
+	}
+	
+	/**
+	 * Called by the data monitor when its connection ended without
+	 * the bot shutting down, or could not be made. If the server
+	 * hung up before accepting the login token, the token is
+	 * dropped, from the session cache too, and the bot logs in
+	 * again before reconnecting.
+	 * @param theConnected whether the socket had connected.
+	 * @param theAccepted whether the server had accepted the token.
+	 */
+	void dataConnectionLost(boolean theConnected, boolean theAccepted) {
+		if (theConnected) {
+			myLastError = theAccepted ? "Data connection lost." : "Login token rejected.";
+		}
+		if (theConnected && !theAccepted) {
+			myTokenRejected = true;
 			
-			// TODO Extend to incorporate error messages from server.
-			if (responseData.getInt("m") == 3) {
-				if (responseData.has("a") && responseData.has("p")) {
-					myID = responseData.getString("p");
-					myToken = responseData.getString("a");
-					return true;
-				} else {
-					myLoginErrorMessage = "Bad email:password (" + theEmail + ":" + thePassword +").";
-				}
+			SessionCache cache = SessionCache.getInstance();
+			if (cache != null) {
+				cache.remove(myEmail);
 			}
-			
-		} catch (MalformedURLException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
+		}
+		myReconnect.connectionLost();
+	}
+		
+	/**
+	 * Connect to the data server again, logging in first if the
+	 * token was rejected. Called by the reconnect engine; may block
+	 * while logging in or resolving the host. A connection that
+	 * fails is reported to dataConnectionLost() as usual. Does
+	 * nothing once the bot has been shut down.
+	 * @return completes with false if the bot could not log in or
+	 * was shut down.
+	 */
+	CompletableFuture<Boolean> reconnect() {
+		if (myShutdown) {
+			return CompletableFuture.completedFuture(false);
 		}
 		
-		return false;
+		CompletableFuture<Boolean> login = myTokenRejected
+				? freshLogin(myEmail, myPassword) : CompletableFuture.completedFuture(true);
+		
+		return login.thenApply(success -> {
+			if (myShutdown) {
+				return false;
+			}
+			if (!success) {
+				System.err.println(myLoginErrorMessage);
+				return false;
+			}
+			
+			myTokenRejected = false;
+			DataMonitor monitor = new DataMonitor(this);
+			Monitor replaced = (Monitor) myDataMonitor;
+			myDataMonitor = monitor;
+			retire(replaced);
+			if (myShutdown) {
+				// Shut down meanwhile; shutdown() may have stopped the old monitor.
+				monitor.stopDataMonitor();
+				return false;
+			}
+			startDataMonitor();
+			return true;
+		});
 	}
 	
 	/**
-	 * Start the data monitor task.
+	 * Start the data monitor task. Connects in the background.
 	 */
 	public void startDataMonitor() {
 		// Start the data monitor.
-		((DataMonitor) myDataMonitor).startPinger();
-		(new Thread(myDataMonitor)).start();
+		((Monitor) myDataMonitor).start("data-monitor");
 	}
 	
 	/**
@@ -153,19 +379,53 @@ public class Client {
 		return myLoginErrorMessage;
 	}
 	
+	/**
+	 * Returns what last went wrong with the bot's connections or
+	 * login. Not cleared once the bot recovers.
+	 * @return the last error, or null if there was none.
+	 */
+	public String getLastError() {
+		return myLastError;
+	}
+	
+	/**
+	 * Record what last went wrong with the bot's connections or login.
+	 * @param theError a description of the error.
+	 */
+	void setLastError(String theError) {
+		myLastError = theError;
+	}
+	
 	/**
 	 * Construct the friend list from the incoming JSON
-	 * data.
+	 * data, replacing any earlier one. The controller is told
+	 * about the first one only, not those sent on reconnects.
 	 * @param theData the incoming data.
 	 */
 	public void createFriendList(JSONArray theData) {
-		for(int i = 0; i < theData.length(); i++) {
-			JSONObject friend = theData.getJSONObject(i);
-			Friend f = new Friend(friend.getString("p"), friend.getString("n"));
-			myFriendList.add(f);
-		}
+		myFriends.replace(theData);
+		EventBus.getInstance().publish(BotEvent.Type.FRIEND_LIST, this, myFriends.size(), null);
 		
-		myController.setLoggedIn(true);
+		if (!myLoggedIn) {
+			myLoggedIn = true;
+			myController.setLoggedIn(true);
+		}
+	}
+	
+	/**
+	 * Returns the servers the bot talks to.
+	 * @return the endpoints.
+	 */
+	public Endpoints getEndpoints() {
+		return myEndpoints;
+	}
+	
+	/**
+	 * Returns the bot's email address. Can be null.
+	 * @return the email address.
+	 */
+	public String getEmail() {
+		return myEmail;
 	}
 	
 	/**
@@ -191,7 +451,16 @@ public class Client {
 	 * @return true if the bot is in a custom game lobby.
 	 */
 	public boolean getLobbyStatus() {
-		return myLobbyStatus;
+		return getLobbyState() != LobbyState.IDLE;
+	}
+	
+	/**
+	 * Returns the stage of the bot's visit to a custom game lobby.
+	 * @return the lobby state, IDLE if not in a lobby.
+	 */
+	public LobbyState getLobbyState() {
+		GameLobbyMonitor monitor = myGameLobbyMonitor.get();
+		return monitor == null ? LobbyState.IDLE : monitor.getLobbyState();
 	}
 	
 	/**
@@ -199,11 +468,172 @@ public class Client {
 	 * @return the friend list.
 	 */
 	public List<Friend> getFriendList() {
-		return myFriendList;
+		return myFriends.getFriends();
 	}
 	
 	/**
-	 * Returns the friend of the bot. Can be null.
+	 * Return the bot's friends, indexed by player ID.
+	 * @return the friend directory.
+	 */
+	public FriendDirectory getFriendDirectory() {
+		return myFriends;
+	}
+	
+	/**
+	 * Returns true once the friend list has been received.
+	 * @return true if the bot is fully logged in.
+	 */
+	public boolean hasFriendList() {
+		return myLoggedIn;
+	}
+	
+	/**
+	 * Returns the number of messages the bot's monitors processed,
+	 * since the bot was created.
+	 * @return the number of parsed messages.
+	 */
+	public long getParsedMessageCount() {
+		long count = myRetiredParsed.get() + ((Monitor) myDataMonitor).getParsedMessageCount();
+		Monitor monitor = myGameLobbyMonitor.get();
+		if (monitor != null) {
+			count += monitor.getParsedMessageCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the number of messages the bot's monitors skipped
+	 * without parsing, as nothing handles their type, since the bot
+	 * was created.
+	 * @return the number of skipped messages.
+	 */
+	public long getSkippedMessageCount() {
+		long count = myRetiredSkipped.get() + ((Monitor) myDataMonitor).getSkippedMessageCount();
+		Monitor monitor = myGameLobbyMonitor.get();
+		if (monitor != null) {
+			count += monitor.getSkippedMessageCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the number of messages the bot's monitors sent, since
+	 * the bot was created.
+	 * @return the number of sent messages.
+	 */
+	public long getSentMessageCount() {
+		long count = myRetiredSent.get() + ((Monitor) myDataMonitor).getSentMessageCount();
+		Monitor monitor = myGameLobbyMonitor.get();
+		if (monitor != null) {
+			count += monitor.getSentMessageCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns true while the bot is connected to the data server.
+	 * @return true if the data socket is open.
+	 */
+	public boolean isDataConnected() {
+		return ((Monitor) myDataMonitor).isRunning();
+	}
+	
+	/**
+	 * Returns true while the bot is connected to a game lobby.
+	 * @return true if a lobby socket is open.
+	 */
+	public boolean isLobbyConnected() {
+		Monitor monitor = myGameLobbyMonitor.get();
+		return monitor != null && monitor.isRunning();
+	}
+	
+	/**
+	 * Returns the number of attempts the bot made to reconnect to
+	 * the data server.
+	 * @return the number of reconnects.
+	 */
+	public int getReconnectCount() {
+		return myReconnect.getAttemptCount();
+	}
+	
+	/**
+	 * Returns true while the bot is reconnecting to the data server.
+	 * @return true if the data connection is lost.
+	 */
+	public boolean isReconnecting() {
+		return myReconnect.isRecovering();
+	}
+	
+	/**
+	 * Returns the time from losing the data connection until the
+	 * server accepted the bot again, for the last reconnect.
+	 * @return the time to recover in milliseconds, or -1 if the
+	 * bot has not reconnected.
+	 */
+	public double getRecoveryTime() {
+		return myReconnect.getRecoveryTime();
+	}
+	
+	/**
+	 * Returns the duration of the last login.
+	 * @return the login time in milliseconds, or -1 if the bot has not logged in.
+	 */
+	public double getLoginTime() {
+		long loginTime = myLoginTime;
+		return loginTime < 0 ? -1 : loginTime / 1e6;
+	}
+	
+	/**
+	 * Returns the round trip of the last keepalive ping on the
+	 * data socket.
+	 * @return the round trip in milliseconds, or -1 if none was answered.
+	 */
+	public double getKeepaliveRoundTrip() {
+		return ((DataMonitor) myDataMonitor).getKeepaliveRoundTrip();
+	}
+	
+	/**
+	 * Returns the message counts by type and the handling latency
+	 * of the bot's monitors, combined, since the bot was created.
+	 * @return a snapshot of the bot's message statistics.
+	 */
+	public MessageStats getMessageStats() {
+		MessageStats stats = new MessageStats(false);
+		stats.add(myRetiredStats);
+		stats.add(((Monitor) myDataMonitor).getStats());
+		Monitor monitor = myGameLobbyMonitor.get();
+		if (monitor != null) {
+			stats.add(monitor.getStats());
+		}
+		return stats;
+	}
+	
+	/**
+	 * Add the counts of a monitor just replaced to the bot's totals.
+	 * Takes no lock, so a reading made while a monitor is retired may
+	 * briefly miss its counts.
+	 * @param theMonitor the monitor.
+	 */
+	private void retire(Monitor theMonitor) {
+		myRetiredStats.add(theMonitor.getStats());
+		myRetiredParsed.addAndGet(theMonitor.getParsedMessageCount());
+		myRetiredSkipped.addAndGet(theMonitor.getSkippedMessageCount());
+		myRetiredSent.addAndGet(theMonitor.getSentMessageCount());
+	}
+	
+	/**
+	 * Returns the clock synchronisation of the current race, for
+	 * its offset, round trip and jitter. Can be null.
+	 * @return the race's clock synchronisation.
+	 */
+	public ClockSync getClockSync() {
+		GameLobbyMonitor monitor = myGameLobbyMonitor.get();
+		return monitor == null ? null : monitor.getClockSync();
+	}
+	
+	/**
+	 * Returns the friend whose race the bot joined last, or the
+	 * only friend it accepts requests from. Can be null.
 	 * @return the bot's friend.
 	 */
 	public Friend getFriend() {
@@ -224,143 +654,142 @@ public class Client {
 	 * @param theFriend whose requests should be accepted.
 	 */
 	public void setMyFriend(Friend theFriend) {
-		if (myGameLobbyMonitor != null) {
-			((Monitor) myGameLobbyMonitor).stopMonitor();
-			myLobbyStatus = false;
-		}
+		leaveLobby();
 		myFriend = theFriend;
+		myAuthorised = theFriend == null ? Collections.<String, Friend>emptyMap()
+				: Collections.singletonMap(theFriend.getPlayerID(), theFriend);
 	}
 	
 	/**
-	 * Set the bot's status.
-	 * @param theStatus the bot's current status.
+	 * Set the friends whose game invites the bot should accept.
+	 * The bot stays in its lobby if the friend it follows is
+	 * still among them.
+	 * @param theFriends the friends by player ID, as built by
+	 * authorise(). The map is not copied.
 	 */
-	public void setStatus(int theStatus) {
-		if (theStatus < 1 || theStatus > 3)
-			throw new IllegalArgumentException("The status: " + theStatus + " is invalid.");
-		myStatus = theStatus;
-		((DataMonitor) myDataMonitor).sendStatusUpdate(theStatus);
+	public void setAuthorisedFriends(Map<String, Friend> theFriends) {
+		Friend current = myFriend;
+		myAuthorised = theFriends;
+		
+		if (current != null && !theFriends.containsKey(current.getPlayerID())) {
+			leaveLobby();
+			current = null;
+		}
+		if (current == null && theFriends.size() == 1) {
+			current = theFriends.values().iterator().next();
+		}
+		myFriend = current;
 	}
 	
 	/**
-	 * Join a custom race request. This means that the
-	 * bot will enter a custom game lobby.
+	 * Accept game invites from one more friend.
+	 * @param theFriend the friend.
 	 */
-	public void joinCustomRace(String theIP, String thePlayerID, int theToken) {
-		if (myFriend != null && myFriend.getPlayerID().equals(thePlayerID) && myLobbyStatus == false) {
-			myGameLobbyMonitor = new GameLobbyMonitor(this, theIP, theToken);
-			(new Thread(myGameLobbyMonitor)).start();
-			myLobbyStatus = true;
-		}
+	public void addAuthorisedFriend(Friend theFriend) {
+		Map<String, Friend> friends = new HashMap<String, Friend>(myAuthorised);
+		friends.put(theFriend.getPlayerID(), theFriend);
+		setAuthorisedFriends(Map.copyOf(friends));
 	}
 	
 	/**
-	 * Toggle the lobby status of the bot.
+	 * Returns the friends whose game invites the bot accepts.
+	 * @return the friends.
 	 */
-	public void toggleLobbyStatus() {
-		myLobbyStatus = myLobbyStatus ^ true;
+	public Collection<Friend> getAuthorisedFriends() {
+		return myAuthorised.values();
 	}
 	
 	/**
-	 * Initiate shutdown sequence.
+	 * Build the compact, immutable map of friends that
+	 * setAuthorisedFriends() takes. One map can be given to any
+	 * number of bots.
+	 * @param theFriends the friends.
+	 * @return the friends by player ID.
 	 */
-	public void shutdown() {
-		if (myDataMonitor != null) {
-			((DataMonitor) myDataMonitor).stopDataMonitor();
-		}
-		
-		if (myGameLobbyMonitor != null) {
-			((Monitor) myGameLobbyMonitor).stopMonitor();
+	public static Map<String, Friend> authorise(Collection<Friend> theFriends) {
+		Map<String, Friend> friends = new HashMap<String, Friend>();
+		for (Friend friend : theFriends) {
+			friends.put(friend.getPlayerID(), friend);
 		}
+		return Map.copyOf(friends);
 	}
 	
 	/**
-	 * Configure the HTTPS connection.
-	 * @param theConnection the HTTPS connection.
+	 * Leave the current game lobby, if any.
 	 */
-	private HttpsURLConnection configureConnection(HttpsURLConnection theConnection) {
-		// Set method.
-		try {
-			theConnection.setRequestMethod("POST");
-		} catch (ProtocolException e) {
-			e.printStackTrace();
+	private void leaveLobby() {
+		GameLobbyMonitor monitor = myGameLobbyMonitor.get();
+		if (monitor != null) {
+			monitor.leave();
 		}
-		// Set headers.
-		theConnection.setRequestProperty("Host", "minttuentrypoint.dirtybit.no:6389");
-		theConnection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-		theConnection.setRequestProperty("Connection", "keep-alive");
-		theConnection.setRequestProperty("Accept", "*/*");
-		theConnection.setRequestProperty("User-Agent", "Fun%20Run%202/47 CFNetwork/711.4.6 Darwin/14.0.0");
-		theConnection.setRequestProperty("Accept-Language", "en-us");
-		theConnection.setRequestProperty("Accept-Encoding", "gzip, deflate");
-		
-		// Set other options.
-		theConnection.setUseCaches(false);
-		theConnection.setDoOutput(true);
-		theConnection.setDoInput(true);
-		
-		return theConnection;
 	}
 	
 	/**
-	 * Returns the JSON version of the login information to send
-	 * to the server.
-	 * @param theEmail the bot's email address.
-	 * @param thePassword the bot's password.
-	 * @return the JSON version of the login information.
-	 */
-	private JSONObject configureLoginJSONData(String theEmail, String thePassword) {
-		JSONObject data = new JSONObject();
-		data.put("e", theEmail)
-			.put("d", "")
-			.put("w", thePassword)
-			.put("m", 3);
+	 * Set the bot's status.
+	 * @param theStatus the bot's current status.
+	 */
+	public void setStatus(int theStatus) {
+		if (theStatus < 1 || theStatus > 3)
+			throw new IllegalArgumentException("The status: " + theStatus + " is invalid.");
+		myStatus = theStatus;
+		myStatusSet = true;
+		EventBus.getInstance().publish(BotEvent.Type.STATUS, this, theStatus, null);
 		
-		return data;
+		// Sent once connected otherwise.
+		if (isDataConnected()) {
+			((DataMonitor) myDataMonitor).sendStatusUpdate(theStatus);
+		}
 	}
 	
 	/**
-	 * Read the login response data from the server.
-	 * @param theInputStream the input stream to read data from.
-	 * @return the read data.
+	 * Join a custom race request. This means that the
+	 * bot will enter a custom game lobby. Only requests from
+	 * the authorised friends are accepted, and only while the
+	 * bot is not in a lobby; a duplicate invite loses the
+	 * compare-and-set and is dropped.
 	 */
-	private JSONObject readLoginResponse(InputStream theInputStream) {
-		GZIPInputStream gzipped = null;
-		BufferedReader reader = null;
-		String line = null;
-		StringBuffer response = new StringBuffer();
+	public void joinCustomRace(String theIP, String thePlayerID, int theToken) {
+		Friend inviter = myAuthorised.get(thePlayerID);
+		GameLobbyMonitor current = myGameLobbyMonitor.get();
 		
-		try {
-			gzipped = new GZIPInputStream(theInputStream);
-			reader = new BufferedReader(new InputStreamReader(gzipped));
-			
-			while((line = reader.readLine()) != null) {
-				response.append(line);
-			}
-			
-			reader.close();
-			
-		} catch (IOException e2) {
-			e2.printStackTrace();
+		if (inviter == null || (current != null && current.getLobbyState() != LobbyState.IDLE)) {
+			EventBus.getInstance().publish(BotEvent.Type.INVITE, this, 0, thePlayerID);
+			return;
 		}
 		
-		JSONObject responseData = new JSONObject(response.toString());
-		
-		return responseData;
+		GameLobbyMonitor monitor = new GameLobbyMonitor(this, theIP, theToken);
+		boolean accepted = myGameLobbyMonitor.compareAndSet(current, monitor);
+		if (accepted && current != null) {
+			retire(current);
+		}
+		EventBus.getInstance().publish(BotEvent.Type.INVITE, this, accepted ? 1 : 0, thePlayerID);
+		if (accepted) {
+			myFriend = inviter;
+			monitor.start("lobby-monitor");
+		}
 	}
 	
 	/**
-	 * Send the login request to the server.
-	 * @param theOutputStream the output stream to write to.
-	 * @param data the request data to be written.
+	 * Initiate shutdown sequence.
 	 */
-	private void sendLoginRequest(DataOutputStream theOutputStream, JSONObject data) {
-		try {
-			theOutputStream.writeBytes(data.toString());
-			theOutputStream.flush();
-			theOutputStream.close();
-		} catch (IOException e) {
-			e.printStackTrace();
+	public void shutdown() {
+		myShutdown = true;
+		myReconnect.stop();
+		
+		if (myDataMonitor != null) {
+			((DataMonitor) myDataMonitor).stopDataMonitor();
+		}
+		
+		leaveLobby();
+		
+		SessionCache cache = SessionCache.getInstance();
+		if (cache != null) {
+			cache.flush();
 		}
-	}	
+		
+		MetricsServer metrics = MetricsServer.getInstance();
+		if (metrics != null) {
+			metrics.unregister(this);
+		}
+	}
 }
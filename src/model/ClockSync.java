@@ -0,0 +1,233 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the game server's clock from the time stamps it sends.
+ * Every "17" message yields a sample pairing the server time with
+ * the local System.nanoTime() at which it was valid. When the sample
+ * answers a pong sent by the bot, its round trip is known and the
+ * local time is taken half way through it.
+ *
+ * The most recent samples are kept, and only those whose round trip
+ * is close to the minimum are used, since a long round trip means
+ * the message was queued somewhere and its time stamp is stale. A
+ * least squares fit over those samples gives the offset and drift
+ * of the server's clock against the local one. The local clock is
+ * monotonic, so changes to the wall clock do not affect the result.
+ */
+public class ClockSync {
+	
+	/**
+	 * Largest drift believed, as a fraction. Quartz clocks are
+	 * within a few hundred parts per million.
+	 */
+	private final static double MAX_DRIFT = 1e-3;
+	
+	/**
+	 * Smallest spread of the samples' local times, in milliseconds,
+	 * over which the drift is estimated.
+	 */
+	private final static double MIN_SPREAD_MS = 500;
+	
+	/**
+	 * Local times of the samples, in milliseconds since construction.
+	 */
+	private double[] myLocal;
+	
+	/**
+	 * Server times of the samples, in milliseconds.
+	 */
+	private double[] myServer;
+	
+	/**
+	 * Round trips of the samples in nanoseconds, or -1 if unknown.
+	 */
+	private long[] myRoundTrip;
+	
+	/**
+	 * Number of samples recorded in total.
+	 */
+	private int myCount;
+	
+	/**
+	 * The System.nanoTime() at construction.
+	 */
+	private long myStartTime;
+	
+	/**
+	 * System.nanoTime() of the last pong, or 0 if it has been answered.
+	 */
+	private long myRequestTime;
+	
+	/**
+	 * Server minus local time, at local time zero, in milliseconds.
+	 */
+	private double myOffset;
+	
+	/**
+	 * Server time gained per millisecond of local time.
+	 */
+	private double myDrift;
+	
+	/**
+	 * The last round trip in nanoseconds.
+	 */
+	private volatile long myLastRoundTrip;
+	
+	/**
+	 * Smoothed variation between consecutive round trips, in nanoseconds.
+	 */
+	private volatile double myJitter;
+	
+	/**
+	 * Construct a new clock synchronisation.
+	 * @param theSamples the number of recent samples to fit.
+	 */
+	public ClockSync(int theSamples) {
+		myLocal = new double[theSamples];
+		myServer = new double[theSamples];
+		myRoundTrip = new long[theSamples];
+		myStartTime = System.nanoTime();
+		myLastRoundTrip = -1;
+	}
+	
+	/**
+	 * Note that a pong was sent, which the server answers with a time stamp.
+	 */
+	public synchronized void requestSent() {
+		myRequestTime = System.nanoTime();
+	}
+	
+	/**
+	 * Record a time stamp from the server.
+	 * @param theServerNanos the server time in nanoseconds.
+	 */
+	public synchronized void update(long theServerNanos) {
+		long now = System.nanoTime();
+		long roundTrip = -1;
+		
+		if (myRequestTime != 0) {
+			roundTrip = now - myRequestTime;
+			myRequestTime = 0;
+			
+			if (myLastRoundTrip >= 0) {
+				// Smoothed like the interarrival jitter of RFC 3550.
+				myJitter += (Math.abs(roundTrip - myLastRoundTrip) - myJitter) / 16;
+			}
+			myLastRoundTrip = roundTrip;
+		}
+		
+		int slot = myCount++ % myLocal.length;
+		myLocal[slot] = toMillis(now - myStartTime - Math.max(roundTrip, 0) / 2);
+		myServer[slot] = theServerNanos / 1e6;
+		myRoundTrip[slot] = roundTrip;
+		fit();
+	}
+	
+	/**
+	 * Returns the estimated server time. Before the first time stamp
+	 * arrives this is the time since construction.
+	 * @return the server time in milliseconds.
+	 */
+	public synchronized long getServerTime() {
+		double local = toMillis(System.nanoTime() - myStartTime);
+		return Math.round(local + myOffset + myDrift * local);
+	}
+	
+	/**
+	 * Returns the estimated server time minus the local wall clock.
+	 * @return the offset in milliseconds.
+	 */
+	public long getOffset() {
+		return getServerTime() - System.currentTimeMillis();
+	}
+	
+	/**
+	 * Returns the estimated drift of the server's clock.
+	 * @return the drift in parts per million.
+	 */
+	public synchronized double getDrift() {
+		return myDrift * 1e6;
+	}
+	
+	/**
+	 * Returns the last measured round trip.
+	 * @return the round trip in milliseconds, or -1 if none was measured.
+	 */
+	public double getRoundTripTime() {
+		long roundTrip = myLastRoundTrip;
+		return roundTrip < 0 ? -1 : toMillis(roundTrip);
+	}
+	
+	/**
+	 * Returns the smoothed variation of the round trip.
+	 * @return the jitter in milliseconds.
+	 */
+	public double getJitter() {
+		return toMillis((long) myJitter);
+	}
+	
+	/**
+	 * Returns the number of time stamps received.
+	 * @return the number of samples.
+	 */
+	public synchronized int getSampleCount() {
+		return myCount;
+	}
+	
+	/**
+	 * Fit the offset and drift to the samples whose round trip is
+	 * at most twice the shortest one kept.
+	 */
+	private void fit() {
+		int size = Math.min(myCount, myLocal.length);
+		long minimum = Long.MAX_VALUE;
+		
+		for (int i = 0; i < size; i++) {
+			if (myRoundTrip[i] >= 0) {
+				minimum = Math.min(minimum, myRoundTrip[i]);
+			}
+		}
+		
+		double limit = minimum == Long.MAX_VALUE ? Long.MAX_VALUE
+				: 2 * minimum + TimeUnit.MILLISECONDS.toNanos(1);
+		double n = 0, sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+		
+		for (int i = 0; i < size; i++) {
+			// Samples without a round trip are only used if none has one.
+			long roundTrip = myRoundTrip[i] < 0 && minimum != Long.MAX_VALUE
+					? Long.MAX_VALUE : Math.max(myRoundTrip[i], 0);
+			
+			if (roundTrip <= limit) {
+				double x = myLocal[i];
+				double y = myServer[i] - x;
+				n++;
+				sumX += x;
+				sumY += y;
+				sumXX += x * x;
+				sumXY += x * y;
+			}
+		}
+		
+		// n times n times the variance of the local times.
+		double denominator = n * sumXX - sumX * sumX;
+		
+		if (denominator < n * n * MIN_SPREAD_MS * MIN_SPREAD_MS) {
+			myDrift = 0;
+		} else {
+			myDrift = (n * sumXY - sumX * sumY) / denominator;
+			myDrift = Math.max(-MAX_DRIFT, Math.min(MAX_DRIFT, myDrift));
+		}
+		myOffset = (sumY - myDrift * sumX) / n;
+	}
+	
+	/**
+	 * Convert nanoseconds to fractional milliseconds.
+	 * @param theNanos the nanoseconds.
+	 * @return the milliseconds.
+	 */
+	private static double toMillis(long theNanos) {
+		return theNanos / 1e6;
+	}
+}
@@ -21,6 +21,48 @@ public class Config {
 	 */
 	public final static String GAME_HTTPS_ADDRESS = "https://minttuentrypoint.dirtybit.no:6389";
 	
+	/**
+	 * Time allowed for connecting to the login server, and again
+	 * for its response, in milliseconds.
+	 */
+	public final static long LOGIN_TIMEOUT_MS = 10000;
+	
+	/**
+	 * Maximum number of logins in flight at once when a fleet of
+	 * bots logs in.
+	 */
+	public final static int LOGIN_CONCURRENCY = Integer.getInteger("echobot.loginConcurrency", 32);
+	
+	/**
+	 * File caching the bots' login sessions between runs. An empty
+	 * value disables the cache.
+	 */
+	public final static String SESSION_CACHE_FILE = System.getProperty("echobot.sessionCache",
+			System.getProperty("user.home") + "/.echobot-sessions");
+	
+	/**
+	 * Age after which a cached session is no longer tried, in milliseconds.
+	 */
+	public final static long SESSION_MAX_AGE_MS = 7L * 24 * 60 * 60 * 1000;
+	
+	/**
+	 * Backoff window of the first reconnect attempt after the data
+	 * connection was lost, in milliseconds. It doubles with every
+	 * further attempt.
+	 */
+	public final static long RECONNECT_BASE_MS = Long.getLong("echobot.reconnectBase", 1000);
+	
+	/**
+	 * Largest backoff window between reconnect attempts, in milliseconds.
+	 */
+	public final static long RECONNECT_MAX_MS = Long.getLong("echobot.reconnectMax", 60000);
+	
+	/**
+	 * Port of the local metrics endpoint, see MetricsServer. Zero,
+	 * the default, disables it.
+	 */
+	public final static int METRICS_PORT = Integer.getInteger("echobot.metricsPort", 0);
+	
 	/**
 	 * Data server port for sending and receiving configuration data,
 	 * and other data such as friends list.
@@ -31,4 +73,130 @@ public class Config {
 	 * Game server port for sending and recieiving data from game/game lobby.
 	 */
 	public final static int GAME_SERVER_PORT = 6789;
+	
+	/**
+	 * I/O engine used by the monitors. "selector" multiplexes every
+	 * socket over a few event-loop threads, "blocking" gives each
+	 * monitor a thread of its own.
+	 */
+	public final static String IO_ENGINE = System.getProperty("echobot.io", "selector");
+	
+	/**
+	 * Time allowed for connecting a monitor's socket, in milliseconds.
+	 */
+	public final static int CONNECT_TIMEOUT_MS = Integer.getInteger("echobot.connectTimeout", 5000);
+	
+	/**
+	 * Time the data socket may stay silent before it is considered
+	 * dead, in milliseconds. Zero, the default, waits forever, as
+	 * the data server may say nothing for long stretches.
+	 */
+	public final static int DATA_READ_TIMEOUT_MS = Integer.getInteger("echobot.dataReadTimeout", 0);
+	
+	/**
+	 * Time a game lobby socket may stay silent before it is
+	 * considered dead, in milliseconds. Zero, the default, waits
+	 * forever, as a lobby may wait long for its host to start.
+	 */
+	public final static int LOBBY_READ_TIMEOUT_MS = Integer.getInteger("echobot.lobbyReadTimeout", 0);
+	
+	/**
+	 * Send buffer size of the monitors' sockets in bytes, or zero
+	 * for the system default.
+	 */
+	public final static int SOCKET_SEND_BUFFER = Integer.getInteger("echobot.sendBuffer", 0);
+	
+	/**
+	 * Receive buffer size of the monitors' sockets in bytes, or
+	 * zero for the system default.
+	 */
+	public final static int SOCKET_RECEIVE_BUFFER = Integer.getInteger("echobot.receiveBuffer", 0);
+	
+	/**
+	 * Number of event-loop threads used by the selector engine.
+	 */
+	public final static int SELECTOR_THREADS = Integer.getInteger("echobot.selectorThreads",
+			Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+	
+	/**
+	 * Thread mode for monitors and lobby joins, either
+	 * "platform" or "virtual". See BotThreads.
+	 */
+	public final static String THREAD_MODE = System.getProperty("echobot.threads", "platform");
+	
+	/**
+	 * Tick length of the shared timing wheel in milliseconds.
+	 */
+	public final static long TIMER_TICK_MS = 10;
+	
+	/**
+	 * Interval between keepalive pings on an idle data socket.
+	 */
+	public final static long KEEPALIVE_INTERVAL_MS = 30000;
+	
+	/**
+	 * Maximum random delay added to each keepalive ping.
+	 */
+	public final static long KEEPALIVE_JITTER_MS = 3000;
+	
+	/**
+	 * Number of recent server time stamps the clock synchronisation
+	 * fits its estimate to.
+	 */
+	public final static int CLOCK_SYNC_SAMPLES = 16;
+	
+	/**
+	 * Longest time a reply may wait in a socket's send queue
+	 * while an inbound burst is handled.
+	 */
+	public final static long OUTBOUND_MAX_DELAY_MS = 5;
+	
+	/**
+	 * Size at which a socket's send queue is flushed early.
+	 */
+	public final static int OUTBOUND_MAX_BATCH_BYTES = 16384;
+	
+	/**
+	 * Largest number of bytes a socket may hold back, in selector
+	 * mode, while its peer is not reading. The connection is closed
+	 * once this is exceeded.
+	 */
+	public final static int OUTBOUND_MAX_BACKLOG_BYTES = Integer.getInteger("echobot.sendBacklog", 262144);
+	
+	/**
+	 * Interval at which the movement engine re-evaluates the bot's
+	 * position, in milliseconds.
+	 */
+	public final static long MOVEMENT_TICK_MS = Long.getLong("echobot.movementTick", 50);
+	
+	/**
+	 * Distance between the predicted player position and the bot's
+	 * position at which a new position echo is sent.
+	 */
+	public final static int MOVEMENT_ERROR_THRESHOLD = Integer.getInteger("echobot.movementThreshold", 16);
+	
+	/**
+	 * Longest time the movement engine extrapolates the followed
+	 * player without a new position, in milliseconds. After that the
+	 * player is held where it was last predicted.
+	 */
+	public final static long MOVEMENT_STALE_MS = Long.getLong("echobot.movementStale", 1000);
+	
+	/**
+	 * Time unit of the speeds in position messages, in milliseconds.
+	 * The protocol does not state it; speeds are taken to be per
+	 * second, as in MockGameServer, until measured against the game.
+	 */
+	public final static long VELOCITY_TIME_UNIT_MS = Long.getLong("echobot.velocityUnit", 1000);
+	
+	/**
+	 * Number of slots in the event bus ring, rounded up to a power
+	 * of two. A subscriber that falls this far behind misses events.
+	 */
+	public final static int EVENT_BUS_SIZE = Integer.getInteger("echobot.eventBusSize", 16384);
+	
+	/**
+	 * Number of times per second the fleet dashboard redraws.
+	 */
+	public final static int DASHBOARD_FPS = Integer.getInteger("echobot.dashboardFps", 10);
 }
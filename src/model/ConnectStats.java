@@ -0,0 +1,85 @@
+package model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connect latencies and failures of one host, kept for every
+ * host the monitors connect to.
+ */
+public class ConnectStats {
+	
+	/**
+	 * The statistics by "host:port".
+	 */
+	private final static Map<String, ConnectStats> HOSTS = new ConcurrentHashMap<String, ConnectStats>();
+	
+	/**
+	 * Time from starting to connect until connected.
+	 */
+	private LatencyHistogram myLatency;
+	
+	/**
+	 * Number of connects that failed or timed out.
+	 */
+	private AtomicLong myFailures;
+	
+	/**
+	 * Construct new, empty statistics.
+	 */
+	private ConnectStats() {
+		myLatency = new LatencyHistogram();
+		myFailures = new AtomicLong();
+	}
+	
+	/**
+	 * Return the statistics of a host, creating them on first use.
+	 * @param theHost the host.
+	 * @param thePort the port.
+	 * @return the host's statistics.
+	 */
+	public static ConnectStats get(String theHost, int thePort) {
+		return HOSTS.computeIfAbsent(theHost + ":" + thePort, host -> new ConnectStats());
+	}
+	
+	/**
+	 * Returns the statistics of every host connected to.
+	 * @return the statistics by "host:port".
+	 */
+	public static Map<String, ConnectStats> getAll() {
+		return Collections.unmodifiableMap(HOSTS);
+	}
+	
+	/**
+	 * Record a successful connect.
+	 * @param theNanos the time it took in nanoseconds.
+	 */
+	public void connected(long theNanos) {
+		myLatency.record(theNanos);
+	}
+	
+	/**
+	 * Count a failed connect.
+	 */
+	public void failed() {
+		myFailures.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the latency of the successful connects.
+	 * @return the histogram.
+	 */
+	public LatencyHistogram getLatency() {
+		return myLatency;
+	}
+	
+	/**
+	 * Returns the number of connects that failed or timed out.
+	 * @return the number of failures.
+	 */
+	public long getFailureCount() {
+		return myFailures.get();
+	}
+}
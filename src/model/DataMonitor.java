@@ -4,39 +4,31 @@ import java.io.PrintWriter;
 
 import org.json.JSONObject;
 
-import javafx.application.Platform;
-
 /**
  * Data Monitor - monitor data from socket
- * connection with 'data' server. See Config.
+ * connection with 'data' server. See Endpoints.
  * @author Damiene Stewart
  */
 public class DataMonitor extends Monitor {
 	
 	/**
-	 * Pinger class to send ping to socket.
-	 */
-	private Pinger myPinger;
-	
-	/**
-	 * The writer.
+	 * Keeps the socket alive with pings.
 	 */
-	private PrintWriter myWriter;
+	private Keepalive myKeepalive;
 	
 	/**
-	 * Thread reference so that the thread
-	 * may be interrupted while in sleep();
+	 * Whether the server accepted the login token on this connection.
 	 */
-	private Thread myPingThread;
+	private volatile boolean myAccepted;
 	
 	/**
 	 * Initialize the Data Monitor.
 	 * @param theClient the client.
 	 */
 	public DataMonitor(Client theClient) {
-		super(theClient, Config.GAME_HOST_NAME, Config.DATA_SERVER_PORT);	
-		myWriter = null;
-		myPingThread = null;
+		super(theClient, theClient.getEndpoints().getDataHost(), theClient.getEndpoints().getDataPort(),
+				SocketProfile.DATA);
+		setHandledTypes(1, 35, 37, 51);
 	}
 	
 	/**
@@ -45,11 +37,8 @@ public class DataMonitor extends Monitor {
 	public void stopDataMonitor() {
 		stopMonitor();
 		
-		if (myPinger != null) {
-			myPinger.stopPinger();
-			if (myPingThread.isAlive()) {
-				myPingThread.interrupt();
-			}
+		if (myKeepalive != null) {
+			myKeepalive.stop();
 		}
 	}
 	
@@ -61,14 +50,24 @@ public class DataMonitor extends Monitor {
 		JSONObject ob = new JSONObject()
 						.put("m", 45)
 						.put("s", theStatus);
-		myWriter.println(ob.toString());
+		getWriter().println(ob.toString());
 	}
 	
 	/**
-	 * Start the pinger task.
+	 * Start the keepalive pings.
 	 */
-	public void startPinger() {
-		setupPinger();
+	public void startKeepalive() {
+		myKeepalive = new Keepalive(this);
+		myKeepalive.start();
+	}
+	
+	/**
+	 * Returns the round trip of the last answered keepalive ping.
+	 * @return the round trip in milliseconds, or -1 if none was answered.
+	 */
+	public double getKeepaliveRoundTrip() {
+		Keepalive keepalive = myKeepalive;
+		return keepalive == null ? -1 : keepalive.getRoundTripTime();
 	}
 	
 	/**
@@ -76,24 +75,29 @@ public class DataMonitor extends Monitor {
 	 * Process the incoming data from the socket.
 	 */
 	@Override
-	protected void processSocketData(Object theData, PrintWriter theWriter) {
-		JSONObject data = (JSONObject) theData;
-		myWriter = getWriter();
-		int messageType = data.getInt("m");
+	protected void processSocketData(JsonCursor theData, PrintWriter theWriter) {
+		int messageType = theData.peekType();
 		
 		switch (messageType) {
 		case 1:
-			Platform.runLater(() -> {
-				myClient.createFriendList(data.getJSONArray("f"));
-			});
+			myAccepted = true;
+			myClient.sessionAccepted();
+			
+			myClient.createFriendList(theData.toJSONObject().getJSONArray("f"));
 			break;
 			
 		case 35:
-			joinCustomGame(data);
+			joinCustomGame(theData);
+			break;
+		
+		case 37:
+			if (myKeepalive != null) {
+				myKeepalive.replied();
+			}
 			break;
 		
 		case 51:
-			respondToChallenge(myWriter);
+			respondToChallenge(theWriter);
 			break;
 			
 		default:
@@ -102,12 +106,25 @@ public class DataMonitor extends Monitor {
 	}
 	
 	/**
-	 * Set up pinger.
+	 * {@inheritDoc}
+	 * Starts the keepalive pings.
 	 */
-	private void setupPinger() {
-		myPinger = new Pinger(super.mySocket);
-		myPingThread = (new Thread(myPinger));
-		myPingThread.start();
+	@Override
+	protected void connected() {
+		startKeepalive();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * The client reconnects. A connection closed before the friend
+	 * list arrived means the server rejected the login token.
+	 */
+	@Override
+	protected void connectionClosed() {
+		if (myKeepalive != null) {
+			myKeepalive.stop();
+		}
+		myClient.dataConnectionLost(hasConnected(), myAccepted);
 	}
 	
 	/**
@@ -131,7 +148,7 @@ public class DataMonitor extends Monitor {
 	 * request, and that it can join if it so chose.
 	 * @param theData the game request data.
 	 */
-	private void joinCustomGame(JSONObject theData) {
+	private void joinCustomGame(JsonCursor theData) {
 		String ip = theData.getString("a");
 		String playerID = theData.getString("p");
 		int token = theData.getInt("s");
@@ -0,0 +1,112 @@
+package model;
+
+import java.net.URI;
+
+/**
+ * The servers a bot talks to: the login server, the data server
+ * and the port of the game servers, whose hosts are handed out with
+ * each game invite. The defaults come from Config, and other
+ * endpoints, such as a local mock server, can be given to a Client.
+ */
+public class Endpoints {
+	
+	/**
+	 * The endpoints from Config, created on first use.
+	 */
+	private static Endpoints myDefault;
+	
+	/**
+	 * The address of the login server.
+	 */
+	private URI myLoginAddress;
+	
+	/**
+	 * The host of the data server.
+	 */
+	private String myDataHost;
+	
+	/**
+	 * The port of the data server.
+	 */
+	private int myDataPort;
+	
+	/**
+	 * The port of the game servers.
+	 */
+	private int myGamePort;
+	
+	/**
+	 * The client logging in to the login server, created on first use.
+	 */
+	private LoginClient myLoginClient;
+	
+	/**
+	 * Construct new endpoints.
+	 * @param theLoginAddress the address of the login server.
+	 * @param theDataHost the host of the data server.
+	 * @param theDataPort the port of the data server.
+	 * @param theGamePort the port of the game servers.
+	 */
+	public Endpoints(URI theLoginAddress, String theDataHost, int theDataPort, int theGamePort) {
+		myLoginAddress = theLoginAddress;
+		myDataHost = theDataHost;
+		myDataPort = theDataPort;
+		myGamePort = theGamePort;
+	}
+	
+	/**
+	 * Return the endpoints of the game's servers, from Config.
+	 * @return the default endpoints.
+	 */
+	public static synchronized Endpoints getDefault() {
+		if (myDefault == null) {
+			myDefault = new Endpoints(URI.create(Config.GAME_HTTPS_ADDRESS), Config.GAME_HOST_NAME,
+					Config.DATA_SERVER_PORT, Config.GAME_SERVER_PORT);
+		}
+		return myDefault;
+	}
+	
+	/**
+	 * Return the address of the login server.
+	 * @return the login address.
+	 */
+	public URI getLoginAddress() {
+		return myLoginAddress;
+	}
+	
+	/**
+	 * Return the host of the data server.
+	 * @return the data host.
+	 */
+	public String getDataHost() {
+		return myDataHost;
+	}
+	
+	/**
+	 * Return the port of the data server.
+	 * @return the data port.
+	 */
+	public int getDataPort() {
+		return myDataPort;
+	}
+	
+	/**
+	 * Return the port of the game servers.
+	 * @return the game port.
+	 */
+	public int getGamePort() {
+		return myGamePort;
+	}
+	
+	/**
+	 * Return the client logging in to the login server. Every bot
+	 * using these endpoints shares it.
+	 * @return the login client.
+	 */
+	public synchronized LoginClient getLoginClient() {
+		if (myLoginClient == null) {
+			myLoginClient = new LoginClient(myLoginAddress);
+		}
+		return myLoginClient;
+	}
+}
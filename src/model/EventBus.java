@@ -0,0 +1,349 @@
+package model;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Carries events from the bots' network threads to the UI and the
+ * metrics. Events are written into a ring of preallocated slots, so
+ * publishing does not allocate, and each subscriber reads the ring
+ * at its own pace, taking whatever has been published since it last
+ * looked as one batch.
+ *
+ * There are many producers, one per monitor thread or selector
+ * thread, so a slot is claimed with an atomic counter and marked
+ * with the sequence it holds once written. Producers never wait for
+ * subscribers: a subscriber that falls a whole ring behind skips to
+ * the oldest event still held and is told how many it missed.
+ *
+ * A subscriber is woken through its own executor, once per batch
+ * rather than once per event; the JavaFX thread, for example, gets
+ * a single Platform.runLater() however many bots publish.
+ */
+public class EventBus {
+	
+	/**
+	 * Largest number of events handed to a subscriber in one batch,
+	 * so a slow subscriber's thread is not held indefinitely.
+	 */
+	private final static int MAX_BATCH = 1024;
+	
+	/**
+	 * Marks a slot that a producer is writing.
+	 */
+	private final static long WRITING = Long.MIN_VALUE;
+	
+	/**
+	 * The shared instance.
+	 */
+	private static EventBus myInstance;
+	
+	/**
+	 * The preallocated events.
+	 */
+	private BotEvent[] mySlots;
+	
+	/**
+	 * The sequence of the event each slot holds, or WRITING.
+	 */
+	private AtomicLongArray myPublished;
+	
+	/**
+	 * Sequence to give the next event published.
+	 */
+	private AtomicLong myNext;
+	
+	/**
+	 * The number of slots less one, for masking sequences.
+	 */
+	private int myMask;
+	
+	/**
+	 * The subscribers, replaced as a whole when one is added or
+	 * removed.
+	 */
+	private volatile Subscription[] mySubscriptions;
+	
+	/**
+	 * Construct a new event bus.
+	 * @param theSize the minimum number of slots.
+	 */
+	public EventBus(int theSize) {
+		if (theSize <= 0)
+			throw new IllegalArgumentException("The size: " + theSize + " is invalid.");
+		int size = Integer.highestOneBit(theSize);
+		if (size < theSize) {
+			size <<= 1;
+		}
+		
+		mySlots = new BotEvent[size];
+		myPublished = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			mySlots[i] = new BotEvent();
+			myPublished.set(i, i - size);
+		}
+		myNext = new AtomicLong();
+		myMask = size - 1;
+		mySubscriptions = new Subscription[0];
+	}
+	
+	/**
+	 * Returns the shared event bus, creating it on first use.
+	 * @return the event bus.
+	 */
+	public static synchronized EventBus getInstance() {
+		if (myInstance == null) {
+			myInstance = new EventBus(Config.EVENT_BUS_SIZE);
+		}
+		return myInstance;
+	}
+	
+	/**
+	 * Publish an event without a value or text.
+	 * @param theType the kind of event.
+	 * @param theClient the bot.
+	 */
+	public void publish(BotEvent.Type theType, Client theClient) {
+		publish(theType, theClient, 0, null);
+	}
+	
+	/**
+	 * Publish an event and wake the subscribers that are idle.
+	 * Does not block or allocate.
+	 * @param theType the kind of event.
+	 * @param theClient the bot.
+	 * @param theValue the number, see BotEvent.Type.
+	 * @param theText the text, see BotEvent.Type. Can be null.
+	 */
+	public void publish(BotEvent.Type theType, Client theClient, int theValue, String theText) {
+		long sequence = myNext.getAndIncrement();
+		int index = (int) sequence & myMask;
+		
+		// Wait out a producer a whole ring ahead still writing the slot.
+		long previous = myPublished.get(index);
+		while (previous == WRITING || (previous < sequence && !myPublished.compareAndSet(index, previous, WRITING))) {
+			Thread.onSpinWait();
+			previous = myPublished.get(index);
+		}
+		if (previous > sequence) {
+			// Lapped while waiting; the newer event stays.
+			return;
+		}
+		
+		mySlots[index].set(theType, theClient, theValue, theText, System.nanoTime());
+		myPublished.set(index, sequence);
+		
+		for (Subscription subscription : mySubscriptions) {
+			subscription.wake();
+		}
+	}
+	
+	/**
+	 * Subscribe to the events published from now on.
+	 * @param theHandler handles the events.
+	 * @param theExecutor runs the handler, or null if the subscriber
+	 * polls instead; Runnable::run handles them on the publishing
+	 * thread.
+	 * @return the subscription.
+	 */
+	public synchronized Subscription subscribe(Handler theHandler, Executor theExecutor) {
+		Subscription subscription = new Subscription(theHandler, theExecutor, myNext.get());
+		Subscription[] subscriptions = new Subscription[mySubscriptions.length + 1];
+		System.arraycopy(mySubscriptions, 0, subscriptions, 0, mySubscriptions.length);
+		subscriptions[mySubscriptions.length] = subscription;
+		mySubscriptions = subscriptions;
+		return subscription;
+	}
+	
+	/**
+	 * Stop delivering events to a subscriber.
+	 * @param theSubscription the subscription.
+	 */
+	public synchronized void unsubscribe(Subscription theSubscription) {
+		int count = 0;
+		Subscription[] subscriptions = new Subscription[mySubscriptions.length];
+		for (Subscription subscription : mySubscriptions) {
+			if (subscription != theSubscription) {
+				subscriptions[count++] = subscription;
+			}
+		}
+		Subscription[] remaining = new Subscription[count];
+		System.arraycopy(subscriptions, 0, remaining, 0, count);
+		mySubscriptions = remaining;
+	}
+	
+	/**
+	 * Returns the number of events published.
+	 * @return the number of events.
+	 */
+	public long getPublishedCount() {
+		return myNext.get();
+	}
+	
+	/**
+	 * Handles the events of one subscriber, always on one thread
+	 * at a time.
+	 */
+	public interface Handler {
+		
+		/**
+		 * Handle an event. The event is reused once this returns.
+		 * @param theEvent the event.
+		 */
+		void onEvent(BotEvent theEvent);
+		
+		/**
+		 * Called after each batch of events.
+		 * @param theMissed the number of events skipped before the
+		 * batch because the subscriber fell behind.
+		 */
+		void endOfBatch(long theMissed);
+	}
+	
+	/**
+	 * One subscriber's position in the ring.
+	 */
+	public class Subscription implements Runnable {
+		
+		/**
+		 * Handles the events.
+		 */
+		private Handler myHandler;
+		
+		/**
+		 * Runs the batches, or null if the subscriber polls.
+		 */
+		private Executor myExecutor;
+		
+		/**
+		 * Sequence of the next event to handle. Only touched by
+		 * the running batch.
+		 */
+		private long mySequence;
+		
+		/**
+		 * Copy of the event being handled, so a producer reusing
+		 * the slot cannot change it under the handler.
+		 */
+		private BotEvent myEvent;
+		
+		/**
+		 * Whether a batch is scheduled or running.
+		 */
+		private AtomicBoolean myScheduled;
+		
+		/**
+		 * Whether the subscriber has unsubscribed.
+		 */
+		private volatile boolean myCancelled;
+		
+		/**
+		 * Construct a new subscription.
+		 * @param theHandler handles the events.
+		 * @param theExecutor runs the batches.
+		 * @param theSequence the sequence of the first event.
+		 */
+		private Subscription(Handler theHandler, Executor theExecutor, long theSequence) {
+			myHandler = theHandler;
+			myExecutor = theExecutor;
+			mySequence = theSequence;
+			myEvent = new BotEvent();
+			myScheduled = new AtomicBoolean();
+		}
+		
+		/**
+		 * Schedule a batch unless one is already scheduled.
+		 */
+		private void wake() {
+			if (myExecutor != null && !myScheduled.get() && myScheduled.compareAndSet(false, true)) {
+				myExecutor.execute(this);
+			}
+		}
+		
+		/**
+		 * Handle a batch, then schedule another if events were
+		 * published meanwhile. Events still being written are left
+		 * to their producers, which wake the subscriber when done.
+		 */
+		@Override
+		public void run() {
+			long next;
+			try {
+				if (!myCancelled) {
+					drain(MAX_BATCH);
+				}
+			} finally {
+				next = mySequence;
+				myScheduled.set(false);
+			}
+			
+			if (!myCancelled && myPublished.get((int) next & myMask) >= next) {
+				wake();
+			}
+		}
+		
+		/**
+		 * Handle every event published since the last batch, as one
+		 * batch on the calling thread. For subscribers without an
+		 * executor; does nothing while a batch is running elsewhere.
+		 */
+		public void poll() {
+			if (!myCancelled && myScheduled.compareAndSet(false, true)) {
+				try {
+					drain(Integer.MAX_VALUE);
+				} finally {
+					myScheduled.set(false);
+				}
+			}
+		}
+		
+		/**
+		 * Hand the events published since the last batch to the
+		 * handler.
+		 * @param theMax the most events to hand over.
+		 */
+		private void drain(int theMax) {
+			long missed = 0;
+			int count = 0;
+			
+			while (count < theMax && mySequence < myNext.get()) {
+				int index = (int) mySequence & myMask;
+				long published = myPublished.get(index);
+				
+				if (published == mySequence) {
+					myEvent.copy(mySlots[index]);
+					VarHandle.loadLoadFence();
+					if (myPublished.get(index) == mySequence) {
+						mySequence++;
+						count++;
+						myHandler.onEvent(myEvent);
+						continue;
+					}
+				} else if (published < mySequence) {
+					// Still being written; its producer wakes us again.
+					break;
+				}
+				
+				// Overwritten: skip to the oldest event still held.
+				long oldest = Math.max(mySequence + 1, myNext.get() - mySlots.length);
+				missed += oldest - mySequence;
+				mySequence = oldest;
+			}
+			
+			if (count > 0 || missed > 0) {
+				myHandler.endOfBatch(missed);
+			}
+		}
+		
+		/**
+		 * Stop delivering events and leave the bus.
+		 */
+		public void cancel() {
+			myCancelled = true;
+			unsubscribe(this);
+		}
+	}
+}
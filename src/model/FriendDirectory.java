@@ -0,0 +1,137 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The bot's friends, indexed by player ID and by user name. The
+ * whole directory is replaced each time the data server sends the
+ * friend list, so reconnecting does not add duplicates. Readers
+ * on other threads see either the old or the new list, never a
+ * partly built one.
+ *
+ * Player IDs are interned, so the IDs of friends shared by the
+ * bots of a fleet are held once.
+ */
+public class FriendDirectory {
+	
+	/**
+	 * The current friends, immutable once published.
+	 */
+	private volatile Snapshot mySnapshot;
+	
+	/**
+	 * Construct an empty directory.
+	 */
+	public FriendDirectory() {
+		mySnapshot = new Snapshot(new ArrayList<Friend>());
+	}
+	
+	/**
+	 * Replace the directory with a friend list from the server.
+	 * @param theData the friend list, objects with "p" and "n".
+	 */
+	public void replace(JSONArray theData) {
+		List<Friend> friends = new ArrayList<Friend>(theData.length());
+		
+		for (int i = 0; i < theData.length(); i++) {
+			JSONObject friend = theData.getJSONObject(i);
+			friends.add(new Friend(friend.getString("p").intern(), friend.getString("n")));
+		}
+		
+		mySnapshot = new Snapshot(friends);
+	}
+	
+	/**
+	 * Returns the friend with a player ID.
+	 * @param thePlayerID the player ID.
+	 * @return the friend, or null if there is none.
+	 */
+	public Friend get(String thePlayerID) {
+		return mySnapshot.myByID.get(thePlayerID);
+	}
+	
+	/**
+	 * Returns the friend with a player ID or, failing that, a user
+	 * name. Among friends sharing a user name the first one listed
+	 * is returned.
+	 * @param theIDOrName the player ID or user name.
+	 * @return the friend, or null if there is none.
+	 */
+	public Friend find(String theIDOrName) {
+		Snapshot snapshot = mySnapshot;
+		Friend friend = snapshot.myByID.get(theIDOrName);
+		return friend != null ? friend : snapshot.myByName.get(theIDOrName);
+	}
+	
+	/**
+	 * Returns true if a player is a friend.
+	 * @param thePlayerID the player ID.
+	 * @return true if the player is in the directory.
+	 */
+	public boolean contains(String thePlayerID) {
+		return mySnapshot.myByID.containsKey(thePlayerID);
+	}
+	
+	/**
+	 * Returns the friends in the order the server listed them.
+	 * @return an unmodifiable list of the friends.
+	 */
+	public List<Friend> getFriends() {
+		return mySnapshot.myFriends;
+	}
+	
+	/**
+	 * Returns the number of friends.
+	 * @return the size of the directory.
+	 */
+	public int size() {
+		return mySnapshot.myFriends.size();
+	}
+	
+	/**
+	 * One version of the friend list with its indexes.
+	 */
+	private static class Snapshot {
+		
+		/**
+		 * The friends in server order.
+		 */
+		private List<Friend> myFriends;
+		
+		/**
+		 * The friends by player ID.
+		 */
+		private Map<String, Friend> myByID;
+		
+		/**
+		 * The friends by user name.
+		 */
+		private Map<String, Friend> myByName;
+		
+		/**
+		 * Index a friend list. Later duplicates of a player ID
+		 * are dropped.
+		 * @param theFriends the friends.
+		 */
+		private Snapshot(List<Friend> theFriends) {
+			myByID = new HashMap<String, Friend>(theFriends.size() * 4 / 3 + 1);
+			myByName = new HashMap<String, Friend>(theFriends.size() * 4 / 3 + 1);
+			List<Friend> friends = new ArrayList<Friend>(theFriends.size());
+			
+			for (Friend friend : theFriends) {
+				if (myByID.putIfAbsent(friend.getPlayerID(), friend) == null) {
+					myByName.putIfAbsent(friend.getUserName(), friend);
+					friends.add(friend);
+				}
+			}
+			myFriends = Collections.unmodifiableList(friends);
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package model;
 
 import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -14,6 +16,16 @@ import org.json.JSONObject;
  */
 public class GameLobbyMonitor extends Monitor {
 	
+	/**
+	 * Reply to the count down.
+	 */
+	private final static byte[] COUNTDOWN = OutboundEncoder.template("[19]");
+	
+	/**
+	 * Request to rejoin the custom game.
+	 */
+	private final static byte[] REJOIN = OutboundEncoder.template("[16]");
+	
 	/**
 	 * The custom game's token.
 	 */
@@ -30,16 +42,31 @@ public class GameLobbyMonitor extends Monitor {
 	private int myMainPlayerGameID;
 	
 	/**
-	 * The time that this object was instantiated.
+	 * Estimates the server's time from the incoming time stamps.
+	 * Used to synchronize the time between the client and server
+	 * to make movement smooth.
+	 */
+	private ClockSync myClock;
+	
+	/**
+	 * Encoder for replies sent from the read loop.
 	 */
-	private long myBaseTime;
+	private OutboundEncoder myEncoder;
 	
 	/**
-	 * The incoming time from the server. Used to synchronize
-	 * the time between the client and server to make movement
-	 * smooth.
+	 * Encoder for position echoes, sent from the movement engine's tick.
 	 */
-	private long myServerTime;
+	private OutboundEncoder myEchoEncoder;
+	
+	/**
+	 * Decides when the bot's position is echoed.
+	 */
+	private MovementEngine myMovement;
+	
+	/**
+	 * The stage of the bot's visit to this lobby.
+	 */
+	private AtomicReference<LobbyState> myState;
 	
 	/**
 	 * Construct a new Game Lobby Monitor.
@@ -48,10 +75,14 @@ public class GameLobbyMonitor extends Monitor {
 	 * @param theToken the game's token.
 	 */
 	public GameLobbyMonitor(Client theClient, String theIP, int theToken) {
-		super(theClient, theIP, Config.GAME_SERVER_PORT);
+		super(theClient, theIP, theClient.getEndpoints().getGamePort(), SocketProfile.LOBBY);
 		myToken = theToken;
-		myServerTime = 0;
-		myBaseTime = System.currentTimeMillis();
+		myClock = new ClockSync(Config.CLOCK_SYNC_SAMPLES);
+		myEncoder = new OutboundEncoder();
+		myEchoEncoder = new OutboundEncoder();
+		myMovement = new MovementEngine(this);
+		myState = new AtomicReference<LobbyState>(LobbyState.CONNECTING);
+		setHandledTypes(4, 5, 7, 11, 13, 16, 17, 18, 28, 31, 39);
 	}
 
 	/**
@@ -59,64 +90,60 @@ public class GameLobbyMonitor extends Monitor {
 	 * Process the data coming from the socket.
 	 */
 	@Override
-	protected void processSocketData(Object theData, PrintWriter theWriter) {
-		JSONArray data = (JSONArray) theData;
-		String messageType = data.getString(0);
+	protected void processSocketData(JsonCursor theData, PrintWriter theWriter) {
+		int messageType = theData.peekType();
 		
 		switch (messageType) {
 		
-		case "4":
-			if (data.getInt(1) == myMainPlayerGameID) {
+		case 4:
+			if (theData.getInt(1) == myMainPlayerGameID) {
 				endRace();
 			}
 			break;
 		
-		case "5":
-			setSpeed(theWriter);
-			setGameID(data);
+		case 5:
+			if (myState.compareAndSet(LobbyState.IN_LOBBY, LobbyState.RACING)) {
+				EventBus.getInstance().publish(BotEvent.Type.RACE_START, myClient);
+			}
+			setSpeed();
+			setGameID(theData.toJSONArray());
 			break;
 			
-		case "7":
+		case 7:
 			endRace();
-			rejoin(theWriter);
+			rejoin();
 			break;
 		
-		case "11":
-			usedPowerUp(data, theWriter);
+		case 11:
+			usedPowerUp(theData);
 			break;
 			
-		case "13":
-			die(data, theWriter);
+		case 13:
+			die(theData);
 			break;
 				
-		case "16":
-			sendPong(data.getInt(1), theWriter);
+		case 16:
+			sendPong(theData.getInt(1));
 			break;
 		
-		case "17":
-			setServerTime(data.getLong(1));
+		case 17:
+			setServerTime(theData.getLong(1));
 			break;
 			
-		case "18":
-			corrigatePosition(data, theWriter);
+		case 18:
+			corrigatePosition(theData);
 			break;
 			
-		case "28":
+		case 28:
 			endRace();
 			break;
 			
-		case "30":
-			break;
-		
-		case "31":
+		case 31:
 			endRace();
 			break;
-			
-		case "35":
-			break;
 		
-		case "39":
-			joinCustomGame(data.getString(1), theWriter);
+		case 39:
+			joinCustomGame(theData.getString(1), theWriter);
 			break;
 		
 		default:
@@ -126,79 +153,78 @@ public class GameLobbyMonitor extends Monitor {
 	
 	/**
 	 * Kill the player based on a power-up another player used.
+	 * The power-up's player and time are echoed exactly as received.
 	 * @param data the socket data.
-	 * @param theWriter the socket writer.
 	 */
-	private void usedPowerUp(JSONArray data, PrintWriter theWriter) {
-		// TODO Auto-generated method stub
+	private void usedPowerUp(JsonCursor data) {
 		int powerUpType = data.getInt(3);
 		
 		switch (powerUpType) {
 		
 		case 2:
 			if (data.getInt(1) == myMainPlayerGameID) {
-				theWriter.println(
-						new JSONArray()
-						.put(9)
-						.put(data.get(2))
-						.put(myMainPlayerGameID)
-						.put(2)
-						.put(0)
-						.put(1)	
+				send(myEncoder.begin()
+						.add(9)
+						.add(data, 2)
+						.add(myMainPlayerGameID)
+						.add(2)
+						.add(0)
+						.add(1)
+						.end()
 					);
 			}
 			break;
 			
 		case 3:
-			theWriter.println(
-					new JSONArray()
-					.put(9)
-					.put(data.get(2))
-					.put(data.get(1))
-					.put(3) //
-					.put(0)
-					.put(1)
+			send(myEncoder.begin()
+					.add(9)
+					.add(data, 2)
+					.add(data, 1)
+					.add(3) //
+					.add(0)
+					.add(1)
+					.end()
 				);
 			break;
 			
 		case 7:
 			if (data.getInt(4) == myGameID) {
-				theWriter.println(
-						new JSONArray()
-						.put(9)
-						.put(data.get(2))
-						.put(data.get(1))
-						.put(7) //
-						.put(0)
-						.put(1)	
+				send(myEncoder.begin()
+						.add(9)
+						.add(data, 2)
+						.add(data, 1)
+						.add(7) //
+						.add(0)
+						.add(1)
+						.end()
 					);
 			}
 			break;
 			
 		case 8:
 			if (data.getInt(1) == myMainPlayerGameID) {
-				theWriter.println(
-						new JSONArray()
-						.put(9)
-						.put(data.get(2))
-						.put(data.get(1))
-						.put(8) //
-						.put(0)
-						.put(4)
+				send(myEncoder.begin()
+						.add(9)
+						.add(data, 2)
+						.add(data, 1)
+						.add(8) //
+						.add(0)
+						.add(4)
+						.end()
 					);
 			}
 			break;
 			
 		case 9:
 			if (data.getInt(4) == myGameID) {
-				theWriter.println(
-						new JSONArray()
-						.put(9)
-						.put(data.get(2))
-						.put(data.get(1))
-						.put(9) //
-						.put(0)
-						.put(data.getInt(5))	
+				send(myEncoder.begin()
+						.add(9)
+						.add(data, 2)
+						.add(data, 1)
+						.add(9) //
+						.add(0)
+						.add(data.getInt(5))
+						.end()
 					);
 			}
 			break;
@@ -211,17 +237,17 @@ public class GameLobbyMonitor extends Monitor {
 	 * @param data the socket data.
 	 */
 	private void setGameID(JSONArray data) {
-		// TODO Auto-generated method stub
 		JSONArray players = data.getJSONObject(1).getJSONArray("p");
+		String botID = myClient.getID();
+		Friend f = myClient.getFriend();
+		String friendID = f == null ? null : f.getPlayerID();
 		
 		for (int i = 0; i < players.length(); i++) {
-			if (players.getJSONObject(i).getString("p").equals(myClient.getID())) {
-				myGameID = i+1;
-			}
+			String playerID = players.getJSONObject(i).getString("p");
 			
-			Friend f = myClient.getFriend();
-			
-			if (f != null && f.getPlayerID().equals(players.getJSONObject(i).getString("p"))) {
+			if (playerID.equals(botID)) {
+				myGameID = i+1;
+			} else if (playerID.equals(friendID)) {
 				myMainPlayerGameID = i+1;
 			}
 		}
@@ -232,25 +258,24 @@ public class GameLobbyMonitor extends Monitor {
 	 * This happens when the player dies from certain things,
 	 * like rockets, saws, etc... because the bot is too close.
 	 * @param theData the data having the death related information.
-	 * @param theWriter the socket writer to send the response with.
 	 */
-	private void die(JSONArray theData, PrintWriter theWriter) {
+	private void die(JsonCursor theData) {
 		if (theData.getInt(1) == 1) {
 			int powerUp = theData.getInt(4);
 			int hitType = theData.getInt(6);
 			int killer = theData.getInt(3);
 			long respawnTime = (theData.getInt(2) + getServerTime());
 			
-			JSONArray arr = new JSONArray()
-							.put(9)
-							.put(respawnTime)
-							.put(killer)
-							.put(powerUp) //
-							.put(0)
-							.put(hitType);
-			
 			if (powerUp != 9) {
-				theWriter.println(arr.toString());	
+				send(myEncoder.begin()
+						.add(9)
+						.add(respawnTime)
+						.add(killer)
+						.add(powerUp) //
+						.add(0)
+						.add(hitType)
+						.end()
+					);
 			}
 		}
 	}
@@ -260,19 +285,11 @@ public class GameLobbyMonitor extends Monitor {
 	 * This is done based on information received from the server
 	 * about the player's location.
 	 * @param data the incoming data to assess.
-	 * @param theWriter the writer for the socket.
 	 */
-	private void corrigatePosition(JSONArray data, PrintWriter theWriter) {
+	private void corrigatePosition(JsonCursor data) {
 		if (data.getInt(1) == 1) {
-			echoMovement(data.getInt(2), data.getInt(3), data.getInt(4),
-				data.getInt(5), theWriter);
-			
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+			myMovement.update(data.getInt(2), data.getInt(3), data.getInt(4),
+				data.getInt(5));
 		}
 	}
 	
@@ -281,79 +298,131 @@ public class GameLobbyMonitor extends Monitor {
 	 * @return the synchronized server time.
 	 */
 	private long getServerTime() {
-		return myServerTime + (System.currentTimeMillis() - myBaseTime);
+		return myClock.getServerTime();
+	}
+	
+	/**
+	 * Returns the clock synchronisation, for its offset, round trip
+	 * and jitter.
+	 * @return the clock synchronisation.
+	 */
+	public ClockSync getClockSync() {
+		return myClock;
 	}
 	
 	/**
-	 * Tell the server where the bot is.
+	 * Returns the stage of the bot's visit to this lobby.
+	 * @return the lobby state.
+	 */
+	public LobbyState getLobbyState() {
+		return myState.get();
+	}
+	
+	/**
+	 * Leave the lobby, whatever its stage, by stopping the monitor.
+	 * Only the first call has an effect.
+	 * @return true if this call left the lobby.
+	 */
+	public boolean leave() {
+		LobbyState state;
+		do {
+			state = myState.get();
+			if (state == LobbyState.ENDING || state == LobbyState.IDLE) {
+				return false;
+			}
+		} while (!myState.compareAndSet(state, LobbyState.ENDING));
+		
+		stopMonitor();
+		myState.set(LobbyState.IDLE);
+		EventBus.getInstance().publish(BotEvent.Type.RACE_END, myClient);
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * The bot is now in the lobby.
+	 */
+	@Override
+	protected void connected() {
+		myState.compareAndSet(LobbyState.CONNECTING, LobbyState.IN_LOBBY);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * The lobby is left.
+	 */
+	@Override
+	protected void connectionClosed() {
+		leave();
+	}
+	
+	/**
+	 * Tell the server where the bot is. Called by the movement
+	 * engine on the monitor's I/O thread.
 	 * @param xPos bot's x-axis position.
 	 * @param yPos bot's y-axis position.
 	 * @param xV bot's x-axis speed.
 	 * @param yV bot's y-axis speed.
-	 * @param theWriter the writer for the socket.
 	 */
-	private void echoMovement(int xPos, int yPos, int xV, int yV, PrintWriter theWriter) {
-		JSONArray ar = new JSONArray()
-						.put(3)
-						.put(getServerTime())
-						.put(xPos)
-						.put(yPos)
-						.put(xV)
-						.put(yV);
-
-		theWriter.println(ar.toString());
+	void echoMovement(int xPos, int yPos, int xV, int yV) {
+		send(myEchoEncoder.begin()
+				.add(3)
+				.add(getServerTime())
+				.add(xPos)
+				.add(yPos)
+				.add(xV)
+				.add(yV)
+				.end()
+			);
 	}
 
 	/**
 	 * Rejoin the custom game.
-	 * @param theWriter the socket's writer.
 	 */
-	private void rejoin(PrintWriter theWriter) {
+	private void rejoin() {
 		// TODO this doesn't work.
-		JSONArray ar = new JSONArray()
-						.put(16);
-		try {
-			Thread.sleep(1000);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		
-		theWriter.println(ar.toString());
+		sendLater(REJOIN, 1000);
 	}
 
 	/**
-	 * End the race by stopping the monitor.
+	 * End the race by leaving the lobby.
 	 */
 	private void endRace() {
-		myClient.toggleLobbyStatus();
-		myClient.setStatus(1);
-		stopMonitor();
+		if (leave()) {
+			myClient.setStatus(1);
+		}
 	}
 
 	/**
 	 * Reply to count down messages from the server.
-	 * @param theWriter the socket's writer.
 	 */
-	private void setSpeed(PrintWriter theWriter) {
-		JSONArray ar = new JSONArray()
-						.put(19);
-		
-		for (int i = 0; i < 4; i++) {
-			try {
-				Thread.sleep(1000);
-				theWriter.println(ar.toString());
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+	private void setSpeed() {
+		for (int i = 1; i <= 4; i++) {
+			sendLater(COUNTDOWN, i * 1000);
 		}
 	}
 	
+	/**
+	 * Send a pre-encoded message after a delay, without blocking
+	 * the read loop. The timer hands the message to the monitor's
+	 * I/O thread, which drops it if the monitor has stopped by then.
+	 * @param theMessage the message.
+	 * @param theDelayMillis the delay in milliseconds.
+	 */
+	private void sendLater(byte[] theMessage, long theDelayMillis) {
+		TimerWheel.getInstance().schedule(() -> execute(() -> {
+			if (isRunning()) {
+				send(theMessage);
+			}
+		}), theDelayMillis);
+	}
+	
 	/**
 	 * Set the server time.
-	 * @param theServerTime incoming server time.
+	 * @param theServerTime incoming server time in nanoseconds.
 	 */
 	private void setServerTime(long theServerTime) {
-		myServerTime = theServerTime / 1000000;
+		myClock.update(theServerTime);
 	}
 	
 	/**
@@ -375,12 +444,13 @@ public class GameLobbyMonitor extends Monitor {
 	/**
 	 * Reply to ping from the server.
 	 * @param data the ping data.
-	 * @param theWriter the socket's writer.
 	 */
-	private void sendPong(int data, PrintWriter theWriter) {
-		JSONArray ar = new JSONArray()
-						.put(4)
-						.put(data);
-		theWriter.println(ar.toString());
+	private void sendPong(int data) {
+		myClock.requestSent();
+		send(myEncoder.begin()
+				.add(4)
+				.add(data)
+				.end()
+			);
 	}
 }
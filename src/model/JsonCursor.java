@@ -0,0 +1,483 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Cursor-style reader over a single JSON message held in a byte
+ * buffer. The top level of the message is indexed on first access
+ * and values are read straight from the bytes, so reading a few
+ * numeric fields produces no garbage. The cursor is reused for
+ * every message, and is only valid until the next message is read.
+ * Messages that need more than a handful of fields may still be
+ * materialised with toJSONObject() or toJSONArray().
+ */
+public class JsonCursor {
+	
+	/**
+	 * The buffer holding the message.
+	 */
+	private byte[] myBuffer;
+	
+	/**
+	 * Offset of the message in the buffer.
+	 */
+	private int myStart;
+	
+	/**
+	 * End of the message in the buffer.
+	 */
+	private int myEnd;
+	
+	/**
+	 * Whether the top level has been indexed.
+	 */
+	private boolean myIndexed;
+	
+	/**
+	 * The message type, or -2 if not yet peeked.
+	 */
+	private int myType;
+	
+	/**
+	 * Number of top-level elements (or fields of an object).
+	 */
+	private int mySize;
+	
+	/**
+	 * Offsets of the top-level values.
+	 */
+	private int[] myValues;
+	
+	/**
+	 * Offsets of the keys of a top-level object, pointing at the
+	 * opening quote.
+	 */
+	private int[] myKeys;
+	
+	/**
+	 * Construct a new, empty cursor.
+	 */
+	public JsonCursor() {
+		myValues = new int[16];
+		myKeys = new int[16];
+	}
+	
+	/**
+	 * Point the cursor at a new message.
+	 * @param theBuffer the buffer holding the message.
+	 * @param theOffset the message's offset.
+	 * @param theLength the message's length.
+	 * @return this cursor.
+	 */
+	public JsonCursor reset(byte[] theBuffer, int theOffset, int theLength) {
+		myBuffer = theBuffer;
+		myStart = skipWhitespace(theOffset, theOffset + theLength);
+		myEnd = theOffset + theLength;
+		myIndexed = false;
+		mySize = 0;
+		myType = -2;
+		return this;
+	}
+	
+	/**
+	 * Returns the message type without indexing the message: the
+	 * "m" field of an object message, or the first element of an
+	 * array message. Only the bytes up to the type are looked at.
+	 * @return the message type, or -1 if the message has none.
+	 */
+	public int peekType() {
+		if (myType != -2) {
+			return myType;
+		}
+		myType = -1;
+		
+		int position = skipWhitespace(myStart + 1, myEnd);
+		
+		if (!isObject()) {
+			myType = parseType(position);
+			return myType;
+		}
+		
+		while (position < myEnd && myBuffer[position] == '"') {
+			int keyEnd = skipValue(position);
+			int value = skipWhitespace(skipWhitespace(keyEnd, myEnd) + 1, myEnd);
+			
+			if (keyEnd - position == 3 && myBuffer[position + 1] == 'm') {
+				myType = parseType(value);
+				break;
+			}
+			
+			position = skipWhitespace(skipValue(value), myEnd);
+			if (position >= myEnd || myBuffer[position] != ',') {
+				break;
+			}
+			position = skipWhitespace(position + 1, myEnd);
+		}
+		return myType;
+	}
+	
+	/**
+	 * Returns true if the message is a JSON object.
+	 * @return true for an object, false for an array.
+	 */
+	public boolean isObject() {
+		return myStart < myEnd && myBuffer[myStart] == '{';
+	}
+	
+	/**
+	 * Returns the number of elements of an array message, or the
+	 * number of fields of an object message.
+	 * @return the size of the message.
+	 */
+	public int size() {
+		index();
+		return mySize;
+	}
+	
+	/**
+	 * Read an array element as an int. Numbers held in strings,
+	 * such as the "18" message types, are read as well.
+	 * @param theIndex the element's index.
+	 * @return the value.
+	 */
+	public int getInt(int theIndex) {
+		return (int) getLong(theIndex);
+	}
+	
+	/**
+	 * Read an array element as a long.
+	 * @param theIndex the element's index.
+	 * @return the value.
+	 */
+	public long getLong(int theIndex) {
+		return parseLong(valueAt(theIndex));
+	}
+	
+	/**
+	 * Read an array element as a string.
+	 * @param theIndex the element's index.
+	 * @return the value.
+	 */
+	public String getString(int theIndex) {
+		return parseString(valueAt(theIndex));
+	}
+	
+	/**
+	 * Returns the length of an array element's raw JSON token, the
+	 * bytes exactly as they were received, quotes included.
+	 * @param theIndex the element's index.
+	 * @return the length in bytes.
+	 */
+	public int getRawLength(int theIndex) {
+		int start = valueAt(theIndex);
+		return rawEnd(start) - start;
+	}
+	
+	/**
+	 * Copy an array element's raw JSON token, so that a value can be
+	 * echoed without being decoded and encoded again.
+	 * @param theIndex the element's index.
+	 * @param theDestination the array to copy to.
+	 * @param theOffset the offset to copy to.
+	 * @return the number of bytes copied.
+	 */
+	public int copyRaw(int theIndex, byte[] theDestination, int theOffset) {
+		int start = valueAt(theIndex);
+		int length = rawEnd(start) - start;
+		System.arraycopy(myBuffer, start, theDestination, theOffset, length);
+		return length;
+	}
+	
+	/**
+	 * Returns true if an object message has the given key.
+	 * @param theKey the key.
+	 * @return true if the key is present.
+	 */
+	public boolean has(String theKey) {
+		return find(theKey) >= 0;
+	}
+	
+	/**
+	 * Read a field of an object message as an int.
+	 * @param theKey the key.
+	 * @return the value.
+	 */
+	public int getInt(String theKey) {
+		return (int) getLong(theKey);
+	}
+	
+	/**
+	 * Read a field of an object message as a long.
+	 * @param theKey the key.
+	 * @return the value.
+	 */
+	public long getLong(String theKey) {
+		return parseLong(valueOf(theKey));
+	}
+	
+	/**
+	 * Read a field of an object message as a string.
+	 * @param theKey the key.
+	 * @return the value.
+	 */
+	public String getString(String theKey) {
+		return parseString(valueOf(theKey));
+	}
+	
+	/**
+	 * Materialise an object message.
+	 * @return the message as a JSONObject.
+	 */
+	public JSONObject toJSONObject() {
+		return new JSONObject(toString());
+	}
+	
+	/**
+	 * Materialise an array message.
+	 * @return the message as a JSONArray.
+	 */
+	public JSONArray toJSONArray() {
+		return new JSONArray(toString());
+	}
+	
+	@Override
+	public String toString() {
+		return new String(myBuffer, myStart, myEnd - myStart, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Returns the offset of an array element.
+	 * @param theIndex the element's index.
+	 * @return the offset of its value.
+	 */
+	private int valueAt(int theIndex) {
+		index();
+		if (theIndex < 0 || theIndex >= mySize)
+			throw new JSONException("JSON array index " + theIndex + " not found.");
+		return myValues[theIndex];
+	}
+	
+	/**
+	 * Returns the offset of an object field's value.
+	 * @param theKey the key.
+	 * @return the offset of its value.
+	 */
+	private int valueOf(String theKey) {
+		int field = find(theKey);
+		if (field < 0)
+			throw new JSONException("JSON key \"" + theKey + "\" not found.");
+		return myValues[field];
+	}
+	
+	/**
+	 * Find the field with the given key. Keys are compared byte for
+	 * byte, so only plain ASCII keys without escapes are matched,
+	 * which is all the game protocol uses.
+	 * @param theKey the key.
+	 * @return the field's index, or -1 if not present.
+	 */
+	private int find(String theKey) {
+		index();
+		int length = theKey.length();
+		
+		for (int i = 0; i < mySize; i++) {
+			int key = myKeys[i] + 1;
+			if (key + length < myEnd && myBuffer[key + length] == '"') {
+				int c = 0;
+				while (c < length && myBuffer[key + c] == theKey.charAt(c)) {
+					c++;
+				}
+				if (c == length) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Record the offsets of the top-level values, and of the keys
+	 * if the message is an object.
+	 */
+	private void index() {
+		if (myIndexed) {
+			return;
+		}
+		myIndexed = true;
+		
+		boolean object = isObject();
+		int position = skipWhitespace(myStart + 1, myEnd);
+		
+		while (position < myEnd && myBuffer[position] != ']' && myBuffer[position] != '}') {
+			if (mySize == myValues.length) {
+				int[] values = new int[mySize * 2];
+				int[] keys = new int[mySize * 2];
+				System.arraycopy(myValues, 0, values, 0, mySize);
+				System.arraycopy(myKeys, 0, keys, 0, mySize);
+				myValues = values;
+				myKeys = keys;
+			}
+			
+			if (object) {
+				myKeys[mySize] = position;
+				position = skipWhitespace(skipValue(position), myEnd);
+				// Skip the colon.
+				position = skipWhitespace(position + 1, myEnd);
+			}
+			
+			myValues[mySize++] = position;
+			position = skipWhitespace(skipValue(position), myEnd);
+			
+			if (position < myEnd && myBuffer[position] == ',') {
+				position = skipWhitespace(position + 1, myEnd);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the offset just past the value starting at the given offset.
+	 * @param thePosition the start of the value.
+	 * @return the end of the value.
+	 */
+	private int skipValue(int thePosition) {
+		int position = thePosition;
+		int depth = 0;
+		boolean string = false;
+		
+		while (position < myEnd) {
+			byte b = myBuffer[position];
+			
+			if (string) {
+				if (b == '\\') {
+					position++;
+				} else if (b == '"') {
+					string = false;
+					if (depth == 0) {
+						return position + 1;
+					}
+				}
+			} else if (b == '"') {
+				string = true;
+			} else if (b == '{' || b == '[') {
+				depth++;
+			} else if (b == '}' || b == ']') {
+				if (depth == 0) {
+					return position;
+				}
+				depth--;
+				if (depth == 0) {
+					return position + 1;
+				}
+			} else if (b == ',' && depth == 0) {
+				return position;
+			}
+			position++;
+		}
+		return position;
+	}
+	
+	/**
+	 * Returns the offset just past a value, without the whitespace
+	 * that may follow it.
+	 * @param thePosition the start of the value.
+	 * @return the end of the value.
+	 */
+	private int rawEnd(int thePosition) {
+		int end = skipValue(thePosition);
+		while (end > thePosition && myBuffer[end - 1] <= ' ') {
+			end--;
+		}
+		return end;
+	}
+	
+	/**
+	 * Returns the first offset at or after the given one that is
+	 * not whitespace.
+	 * @param thePosition the offset to start from.
+	 * @param theEnd the end of the range.
+	 * @return the offset.
+	 */
+	private int skipWhitespace(int thePosition, int theEnd) {
+		int position = thePosition;
+		while (position < theEnd && myBuffer[position] <= ' ') {
+			position++;
+		}
+		return position;
+	}
+	
+	/**
+	 * Parse a message type, a small non-negative number that may
+	 * be quoted.
+	 * @param thePosition the start of the value.
+	 * @return the type, or -1 if the value is not a number.
+	 */
+	private int parseType(int thePosition) {
+		int position = thePosition;
+		if (position < myEnd && myBuffer[position] == '"') {
+			position++;
+		}
+		
+		int start = position;
+		int value = 0;
+		while (position < myEnd && position - start < 9
+				&& myBuffer[position] >= '0' && myBuffer[position] <= '9') {
+			value = value * 10 + (myBuffer[position++] - '0');
+		}
+		return position == start ? -1 : value;
+	}
+	
+	/**
+	 * Parse the integer part of a number, which may be quoted.
+	 * @param thePosition the start of the value.
+	 * @return the value.
+	 */
+	private long parseLong(int thePosition) {
+		int position = thePosition;
+		if (position < myEnd && myBuffer[position] == '"') {
+			position++;
+		}
+		
+		boolean negative = position < myEnd && myBuffer[position] == '-';
+		if (negative) {
+			position++;
+		}
+		
+		int start = position;
+		long value = 0;
+		while (position < myEnd && myBuffer[position] >= '0' && myBuffer[position] <= '9') {
+			value = value * 10 + (myBuffer[position++] - '0');
+		}
+		
+		if (position == start)
+			throw new JSONException("JSON value is not a number: " + parseString(thePosition));
+		
+		return negative ? -value : value;
+	}
+	
+	/**
+	 * Decode a value as a string. Quoted strings without escapes are
+	 * decoded directly, anything else goes through org.json.
+	 * @param thePosition the start of the value.
+	 * @return the value.
+	 */
+	private String parseString(int thePosition) {
+		int end = skipValue(thePosition);
+		
+		if (myBuffer[thePosition] == '"') {
+			boolean escaped = false;
+			for (int i = thePosition + 1; i < end - 1 && !escaped; i++) {
+				escaped = myBuffer[i] == '\\';
+			}
+			if (!escaped) {
+				return new String(myBuffer, thePosition + 1, end - thePosition - 2, StandardCharsets.UTF_8);
+			}
+		}
+		
+		String raw = new String(myBuffer, thePosition, end - thePosition, StandardCharsets.UTF_8);
+		return new JSONArray("[" + raw + "]").get(0).toString();
+	}
+}
@@ -0,0 +1,141 @@
+package model;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a data connection alive by pinging the server with
+ * {"m":37}; the server replies with the same. Driven by the
+ * shared TimerWheel rather than a sleeping thread per bot.
+ * Each ping is jittered so that a fleet does not ping in
+ * lockstep, and skipped if the socket already carried other
+ * traffic within the interval. The ping itself is sent on the
+ * monitor's I/O thread, not the timer's.
+ */
+public class Keepalive implements Runnable {
+	
+	/**
+	 * The ping message.
+	 */
+	private final static byte[] PING = OutboundEncoder.template("{\"m\":37}");
+	
+	/**
+	 * The monitor whose socket is kept alive.
+	 */
+	private Monitor myMonitor;
+	
+	/**
+	 * The next scheduled ping.
+	 */
+	private volatile TimerWheel.Timeout myTimeout;
+	
+	/**
+	 * Whether the keepalive has been stopped.
+	 */
+	private volatile boolean myStopped;
+	
+	/**
+	 * The System.nanoTime() at which the unanswered ping was sent,
+	 * or 0 if every ping has been answered.
+	 */
+	private volatile long myPingTime;
+	
+	/**
+	 * The round trip of the last answered ping in nanoseconds, or -1.
+	 */
+	private volatile long myRoundTrip = -1;
+	
+	/**
+	 * Construct a new keepalive.
+	 * @param theMonitor the monitor whose socket is kept alive.
+	 */
+	public Keepalive(Monitor theMonitor) {
+		myMonitor = theMonitor;
+	}
+	
+	/**
+	 * Schedule the first ping at a random point within the interval.
+	 */
+	public void start() {
+		schedule(ThreadLocalRandom.current().nextLong(Config.KEEPALIVE_INTERVAL_MS) + 1);
+	}
+	
+	/**
+	 * Stop pinging.
+	 */
+	public void stop() {
+		myStopped = true;
+		TimerWheel.Timeout timeout = myTimeout;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+	}
+	
+	/**
+	 * Send the ping if the socket has been idle for the interval,
+	 * then schedule the next one.
+	 */
+	@Override
+	public void run() {
+		if (myStopped || !myMonitor.isRunning()) {
+			return;
+		}
+		
+		long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - myMonitor.getLastWriteTime());
+		
+		if (idle >= Config.KEEPALIVE_INTERVAL_MS) {
+			myMonitor.execute(this::ping);
+			schedule(Config.KEEPALIVE_INTERVAL_MS + jitter());
+		} else {
+			schedule(Config.KEEPALIVE_INTERVAL_MS - idle + jitter());
+		}
+	}
+	
+	/**
+	 * Send the ping. Runs on the monitor's I/O thread.
+	 */
+	private void ping() {
+		if (!myStopped && myMonitor.isRunning()) {
+			myPingTime = System.nanoTime();
+			myMonitor.send(PING);
+		}
+	}
+	
+	/**
+	 * Called when the server answered a ping.
+	 */
+	public void replied() {
+		long sent = myPingTime;
+		if (sent != 0) {
+			myRoundTrip = System.nanoTime() - sent;
+			myPingTime = 0;
+		}
+	}
+	
+	/**
+	 * Returns the round trip of the last answered ping.
+	 * @return the round trip in milliseconds, or -1 if no ping was answered.
+	 */
+	public double getRoundTripTime() {
+		long roundTrip = myRoundTrip;
+		return roundTrip < 0 ? -1 : roundTrip / 1e6;
+	}
+	
+	/**
+	 * Schedule the next ping.
+	 * @param theDelayMillis the delay in milliseconds.
+	 */
+	private void schedule(long theDelayMillis) {
+		if (!myStopped) {
+			myTimeout = TimerWheel.getInstance().schedule(this, theDelayMillis);
+		}
+	}
+	
+	/**
+	 * Returns a random offset within the configured jitter.
+	 * @return the jitter in milliseconds.
+	 */
+	private long jitter() {
+		return ThreadLocalRandom.current().nextLong(Config.KEEPALIVE_JITTER_MS + 1);
+	}
+}
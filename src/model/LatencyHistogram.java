@@ -0,0 +1,180 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size latency histogram in the style of HdrHistogram. The
+ * buckets are log-linear: every power of two is split into eight
+ * sub-buckets, so a recorded value is known to within 12.5% while
+ * the whole range from one nanosecond to over seventeen seconds
+ * fits in 256 counters. Recording is a handful of instructions and
+ * one atomic increment, so histograms can stay enabled. Values may
+ * be read from any thread while others record.
+ */
+public class LatencyHistogram {
+	
+	/**
+	 * Number of bits of a value kept below its highest bit.
+	 */
+	private final static int SUB_BUCKET_BITS = 3;
+	
+	/**
+	 * Number of sub-buckets per power of two.
+	 */
+	private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	
+	/**
+	 * Number of buckets.
+	 */
+	private final static int BUCKETS = 256;
+	
+	/**
+	 * Largest value recorded as is; larger values are clamped.
+	 */
+	private final static long MAX_VALUE = valueOf(BUCKETS) - 1;
+	
+	/**
+	 * The count of each bucket.
+	 */
+	private AtomicLongArray myCounts;
+	
+	/**
+	 * Number of values recorded.
+	 */
+	private AtomicLong myCount;
+	
+	/**
+	 * Sum of the values recorded.
+	 */
+	private AtomicLong myTotal;
+	
+	/**
+	 * Largest value recorded.
+	 */
+	private AtomicLong myMax;
+	
+	/**
+	 * Construct a new, empty histogram.
+	 */
+	public LatencyHistogram() {
+		myCounts = new AtomicLongArray(BUCKETS);
+		myCount = new AtomicLong();
+		myTotal = new AtomicLong();
+		myMax = new AtomicLong();
+	}
+	
+	/**
+	 * Record a value.
+	 * @param theNanos the latency in nanoseconds.
+	 */
+	public void record(long theNanos) {
+		long value = Math.max(0, Math.min(theNanos, MAX_VALUE));
+		myCounts.incrementAndGet(indexOf(value));
+		myCount.incrementAndGet();
+		myTotal.addAndGet(value);
+		
+		long max = myMax.get();
+		while (value > max && !myMax.compareAndSet(max, value)) {
+			max = myMax.get();
+		}
+	}
+	
+	/**
+	 * Add the values recorded by another histogram to this one.
+	 * @param theOther the other histogram.
+	 */
+	public void add(LatencyHistogram theOther) {
+		for (int i = 0; i < BUCKETS; i++) {
+			long count = theOther.myCounts.get(i);
+			if (count != 0) {
+				myCounts.addAndGet(i, count);
+			}
+		}
+		myCount.addAndGet(theOther.myCount.get());
+		myTotal.addAndGet(theOther.myTotal.get());
+		myMax.accumulateAndGet(theOther.myMax.get(), Math::max);
+	}
+	
+	/**
+	 * Returns the number of values recorded.
+	 * @return the count.
+	 */
+	public long getCount() {
+		return myCount.get();
+	}
+	
+	/**
+	 * Returns the mean of the values recorded.
+	 * @return the mean in nanoseconds, or 0 if empty.
+	 */
+	public double getMean() {
+		long count = myCount.get();
+		return count == 0 ? 0 : (double) myTotal.get() / count;
+	}
+	
+	/**
+	 * Returns the largest value recorded.
+	 * @return the maximum in nanoseconds.
+	 */
+	public long getMax() {
+		return myMax.get();
+	}
+	
+	/**
+	 * Returns the value below which the given percentage of the
+	 * recorded values fall, as the upper end of its bucket.
+	 * @param thePercentile the percentile, from 0 to 100.
+	 * @return the value in nanoseconds, or 0 if empty.
+	 */
+	public long getValueAtPercentile(double thePercentile) {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += myCounts.get(i);
+		}
+		
+		long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, thePercentile)) / 100);
+		long seen = 0;
+		
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += myCounts.get(i);
+			if (seen >= Math.max(rank, 1)) {
+				return Math.min(valueOf(i + 1) - 1, myMax.get());
+			}
+		}
+		return 0;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+				getCount(), getMean() / 1e3, getValueAtPercentile(50) / 1e3, getValueAtPercentile(99) / 1e3,
+				getValueAtPercentile(99.9) / 1e3, getMax() / 1e3);
+	}
+	
+	/**
+	 * Returns the bucket of a value.
+	 * @param theValue the value, at most MAX_VALUE.
+	 * @return the bucket's index.
+	 */
+	private static int indexOf(long theValue) {
+		if (theValue < SUB_BUCKETS) {
+			return (int) theValue;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(theValue) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((theValue >>> shift) & (SUB_BUCKETS - 1));
+	}
+	
+	/**
+	 * Returns the smallest value of a bucket.
+	 * @param theIndex the bucket's index, up to BUCKETS.
+	 * @return the value.
+	 */
+	private static long valueOf(int theIndex) {
+		if (theIndex < SUB_BUCKETS) {
+			return theIndex;
+		}
+		int shift = theIndex / SUB_BUCKETS - 1;
+		return (long) (SUB_BUCKETS + theIndex % SUB_BUCKETS) << shift;
+	}
+}
@@ -0,0 +1,169 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Splits the bytes read from a socket into newline terminated
+ * messages without decoding them. Bytes are read into a single
+ * reusable buffer, and each line is exposed as a range of that
+ * buffer which stays valid until the next read.
+ */
+public class LineFramer {
+	
+	/**
+	 * The buffer holding the bytes read.
+	 */
+	private byte[] myBuffer;
+	
+	/**
+	 * A ByteBuffer view of myBuffer for channel reads.
+	 */
+	private ByteBuffer myByteBuffer;
+	
+	/**
+	 * Start of the bytes not yet returned as a line.
+	 */
+	private int myStart;
+	
+	/**
+	 * End of the bytes read.
+	 */
+	private int myEnd;
+	
+	/**
+	 * Position up to which the buffer has been searched for a newline.
+	 */
+	private int myScan;
+	
+	/**
+	 * Start of the current line.
+	 */
+	private int myLineStart;
+	
+	/**
+	 * Length of the current line, excluding the line terminator.
+	 */
+	private int myLineLength;
+	
+	/**
+	 * Construct a new line framer.
+	 * @param theCapacity the initial buffer size. The buffer grows
+	 * if a single line does not fit.
+	 */
+	public LineFramer(int theCapacity) {
+		myBuffer = new byte[theCapacity];
+		myByteBuffer = ByteBuffer.wrap(myBuffer);
+	}
+	
+	/**
+	 * Advance to the next complete, non-empty line in the buffer.
+	 * @return true if a line is available, false if more bytes
+	 * must be read first.
+	 */
+	public boolean nextLine() {
+		while (myScan < myEnd) {
+			if (myBuffer[myScan++] == '\n') {
+				int length = myScan - 1 - myStart;
+				if (length > 0 && myBuffer[myStart + length - 1] == '\r') {
+					length--;
+				}
+				
+				myLineStart = myStart;
+				myLineLength = length;
+				myStart = myScan;
+				
+				if (length > 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Read more bytes from a stream. Blocks until data is available.
+	 * @param theInput the stream to read from.
+	 * @return the number of bytes read, or -1 at end of stream.
+	 * @throws IOException if the read fails.
+	 */
+	public int read(InputStream theInput) throws IOException {
+		makeRoom();
+		int read = theInput.read(myBuffer, myEnd, myBuffer.length - myEnd);
+		if (read > 0) {
+			myEnd += read;
+		}
+		return read;
+	}
+	
+	/**
+	 * Read more bytes from a channel.
+	 * @param theChannel the channel to read from.
+	 * @return the number of bytes read, or -1 at end of stream.
+	 * @throws IOException if the read fails.
+	 */
+	public int read(ReadableByteChannel theChannel) throws IOException {
+		makeRoom();
+		myByteBuffer.limit(myBuffer.length).position(myEnd);
+		int read = theChannel.read(myByteBuffer);
+		if (read > 0) {
+			myEnd += read;
+		}
+		return read;
+	}
+	
+	/**
+	 * Returns the buffer holding the current line.
+	 * @return the buffer.
+	 */
+	public byte[] getBuffer() {
+		return myBuffer;
+	}
+	
+	/**
+	 * Returns the offset of the current line in the buffer.
+	 * @return the line's offset.
+	 */
+	public int getLineStart() {
+		return myLineStart;
+	}
+	
+	/**
+	 * Returns the length of the current line.
+	 * @return the line's length.
+	 */
+	public int getLineLength() {
+		return myLineLength;
+	}
+	
+	/**
+	 * Returns true if the buffer holds bytes that have not yet been
+	 * returned as a line.
+	 * @return true if bytes are pending.
+	 */
+	public boolean hasPending() {
+		return myStart < myEnd;
+	}
+	
+	/**
+	 * Move unconsumed bytes to the front of the buffer, growing it
+	 * if a partial line fills it entirely.
+	 */
+	private void makeRoom() {
+		if (myStart > 0) {
+			System.arraycopy(myBuffer, myStart, myBuffer, 0, myEnd - myStart);
+			myEnd -= myStart;
+			myScan -= myStart;
+			myStart = 0;
+		}
+		
+		if (myEnd == myBuffer.length) {
+			byte[] larger = new byte[myBuffer.length * 2];
+			System.arraycopy(myBuffer, 0, larger, 0, myEnd);
+			myBuffer = larger;
+			myByteBuffer = ByteBuffer.wrap(myBuffer);
+		}
+	}
+}
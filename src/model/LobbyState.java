@@ -0,0 +1,34 @@
+package model;
+
+/**
+ * Stages of a bot's visit to a custom game lobby. A lobby moves
+ * forward only, from CONNECTING to IDLE; ENDING may be entered
+ * from any earlier stage. See GameLobbyMonitor.
+ */
+public enum LobbyState {
+	
+	/**
+	 * Not in a lobby, or the lobby has been left.
+	 */
+	IDLE,
+	
+	/**
+	 * An invite was accepted and the lobby socket is connecting.
+	 */
+	CONNECTING,
+	
+	/**
+	 * Connected to the lobby, waiting for the race to start.
+	 */
+	IN_LOBBY,
+	
+	/**
+	 * The race has started.
+	 */
+	RACING,
+	
+	/**
+	 * The lobby is being left.
+	 */
+	ENDING
+}
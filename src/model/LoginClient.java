@@ -0,0 +1,101 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Logs bots in over a single shared HTTP client, see
+ * Endpoints.getLoginClient(). Connections are
+ * pooled (and multiplexed over HTTP/2 where the server offers it),
+ * and every bot shares the client's TLS context, so its session
+ * cache lets later handshakes resume instead of starting over. A
+ * fleet restart therefore pays for one full handshake rather than
+ * one per bot. Responses are decompressed and parsed as they are
+ * read, without collecting the body in a string first.
+ */
+public class LoginClient {
+	
+	/**
+	 * The HTTP client.
+	 */
+	private HttpClient myHttpClient;
+	
+	/**
+	 * The address of the login server.
+	 */
+	private URI myAddress;
+	
+	/**
+	 * Construct a new login client.
+	 * @param theAddress the address of the login server.
+	 */
+	public LoginClient(URI theAddress) {
+		myAddress = theAddress;
+		myHttpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.connectTimeout(Duration.ofMillis(Config.LOGIN_TIMEOUT_MS))
+				.build();
+	}
+	
+	/**
+	 * Send a login request.
+	 * @param theEmail the bot's email address.
+	 * @param thePassword the bot's password.
+	 * @return the server's response, which completes exceptionally
+	 * if the request fails.
+	 */
+	public CompletableFuture<JSONObject> login(String theEmail, String thePassword) {
+		JSONObject data = new JSONObject()
+							.put("e", theEmail)
+							.put("d", "")
+							.put("w", thePassword)
+							.put("m", 3);
+		
+		// Host and Connection are managed by the client itself.
+		HttpRequest request = HttpRequest.newBuilder(myAddress)
+				.timeout(Duration.ofMillis(Config.LOGIN_TIMEOUT_MS))
+				.header("Content-Type", "application/x-www-form-urlencoded")
+				.header("Accept", "*/*")
+				.header("User-Agent", "Fun%20Run%202/47 CFNetwork/711.4.6 Darwin/14.0.0")
+				.header("Accept-Language", "en-us")
+				.header("Accept-Encoding", "gzip")
+				.POST(HttpRequest.BodyPublishers.ofString(data.toString(), StandardCharsets.UTF_8))
+				.build();
+		
+		return myHttpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+				.thenApply(LoginClient::readResponse);
+	}
+	
+	/**
+	 * Decompress and parse a login response.
+	 * @param theResponse the response.
+	 * @return the parsed response.
+	 */
+	private static JSONObject readResponse(HttpResponse<InputStream> theResponse) {
+		try (InputStream body = theResponse.body()) {
+			if (theResponse.statusCode() != 200)
+				throw new IOException("Login failed with HTTP status " + theResponse.statusCode() + ".");
+			
+			boolean gzipped = theResponse.headers().firstValue("Content-Encoding")
+					.map(encoding -> encoding.equalsIgnoreCase("gzip")).orElse(false);
+			InputStream input = gzipped ? new GZIPInputStream(body) : body;
+			
+			return new JSONObject(new JSONTokener(new InputStreamReader(input, StandardCharsets.UTF_8)));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
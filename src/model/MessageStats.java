@@ -0,0 +1,187 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counters and latency histograms of the messages a monitor
+ * receives. Every monitor keeps its own, counting the messages of
+ * each type and recording the handling latency of all of them in
+ * one histogram. A shared instance additionally keeps a histogram
+ * per message type over every bot, which would cost too much memory
+ * to keep per bot in a large fleet.
+ *
+ * The latency of a message runs from the moment the read that
+ * delivered it returned until its handler returns. Replies the
+ * handler queues are written when the read's burst ends.
+ */
+public class MessageStats {
+	
+	/**
+	 * Number of message types counted separately. Higher types
+	 * share the last counter.
+	 */
+	public final static int TYPES = 64;
+	
+	/**
+	 * The statistics over every bot.
+	 */
+	private final static MessageStats GLOBAL = new MessageStats(true);
+	
+	/**
+	 * Number of messages received, by type.
+	 */
+	private AtomicLongArray myCounts;
+	
+	/**
+	 * Handling latency of every handled message.
+	 */
+	private LatencyHistogram myLatency;
+	
+	/**
+	 * Handling latency by type, created on first use, or null if
+	 * not kept.
+	 */
+	private AtomicReferenceArray<LatencyHistogram> myTypeLatency;
+	
+	/**
+	 * Construct new, empty statistics.
+	 * @param thePerType whether to keep a histogram per type.
+	 */
+	public MessageStats(boolean thePerType) {
+		myCounts = new AtomicLongArray(TYPES);
+		myLatency = new LatencyHistogram();
+		if (thePerType) {
+			myTypeLatency = new AtomicReferenceArray<LatencyHistogram>(TYPES);
+		}
+	}
+	
+	/**
+	 * Return the statistics over every bot.
+	 * @return the global statistics.
+	 */
+	public static MessageStats getGlobal() {
+		return GLOBAL;
+	}
+	
+	/**
+	 * Count a received message.
+	 * @param theType the message type, or -1 if it has none.
+	 */
+	public void received(int theType) {
+		myCounts.incrementAndGet(slot(theType));
+	}
+	
+	/**
+	 * Record the handling latency of a message.
+	 * @param theType the message type.
+	 * @param theNanos the latency in nanoseconds.
+	 */
+	public void handled(int theType, long theNanos) {
+		myLatency.record(theNanos);
+		
+		if (myTypeLatency != null) {
+			getLatency(theType).record(theNanos);
+		}
+	}
+	
+	/**
+	 * Returns the number of messages of a type received.
+	 * @param theType the message type.
+	 * @return the count.
+	 */
+	public long getCount(int theType) {
+		return myCounts.get(slot(theType));
+	}
+	
+	/**
+	 * Returns the number of messages received.
+	 * @return the count.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < TYPES; i++) {
+			count += myCounts.get(i);
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the handling latency of every handled message.
+	 * @return the histogram.
+	 */
+	public LatencyHistogram getLatency() {
+		return myLatency;
+	}
+	
+	/**
+	 * Returns the handling latency of one message type.
+	 * @param theType the message type.
+	 * @return the histogram, or null if none is kept per type.
+	 */
+	public LatencyHistogram getLatency(int theType) {
+		if (myTypeLatency == null) {
+			return null;
+		}
+		
+		int slot = slot(theType);
+		LatencyHistogram histogram = myTypeLatency.get(slot);
+		if (histogram == null) {
+			myTypeLatency.compareAndSet(slot, null, new LatencyHistogram());
+			histogram = myTypeLatency.get(slot);
+		}
+		return histogram;
+	}
+	
+	/**
+	 * Add the counts and latencies of other statistics to these.
+	 * @param theOther the other statistics.
+	 */
+	public void add(MessageStats theOther) {
+		for (int i = 0; i < TYPES; i++) {
+			long count = theOther.myCounts.get(i);
+			if (count != 0) {
+				myCounts.addAndGet(i, count);
+			}
+		}
+		myLatency.add(theOther.myLatency);
+		
+		if (myTypeLatency != null && theOther.myTypeLatency != null) {
+			for (int i = 0; i < TYPES; i++) {
+				LatencyHistogram histogram = theOther.myTypeLatency.get(i);
+				if (histogram != null) {
+					getLatency(i).add(histogram);
+				}
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("messages=").append(getCount()).append(" latency: ").append(myLatency);
+		
+		for (int i = 0; i < TYPES; i++) {
+			long count = myCounts.get(i);
+			if (count != 0) {
+				sb.append("\n  type ").append(i == TYPES - 1 ? "other" : String.valueOf(i))
+					.append(": count=").append(count);
+				
+				LatencyHistogram histogram = myTypeLatency == null ? null : myTypeLatency.get(i);
+				if (histogram != null) {
+					sb.append(" latency: ").append(histogram);
+				}
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns the counter of a message type.
+	 * @param theType the message type.
+	 * @return the counter's index.
+	 */
+	private static int slot(int theType) {
+		return theType >= 0 && theType < TYPES - 1 ? theType : TYPES - 1;
+	}
+}
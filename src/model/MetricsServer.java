@@ -0,0 +1,482 @@
+package model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP endpoint exporting the fleet's metrics in the
+ * Prometheus text format at /metrics. Enabled by setting
+ * Config.METRICS_PORT; every client registers itself when it is
+ * created and unregisters when it shuts down.
+ *
+ * Nothing is collected ahead of time: a scrape reads the counters
+ * the clients and monitors already keep, and polls the event bus,
+ * on the server's own thread, so the bots' I/O threads do no extra
+ * work. Per-bot series are labelled with the bot's email address,
+ * and their counters run from the bot's creation, across reconnects
+ * and lobbies.
+ */
+public class MetricsServer implements EventBus.Handler {
+	
+	/**
+	 * Content type of the Prometheus text format.
+	 */
+	private final static String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	/**
+	 * Quantiles exported for latency summaries.
+	 */
+	private final static double[] QUANTILES = { 0.5, 0.9, 0.99, 1.0 };
+	
+	/**
+	 * The running metrics server, if enabled.
+	 */
+	private static MetricsServer myInstance;
+	
+	/**
+	 * The HTTP server.
+	 */
+	private HttpServer myServer;
+	
+	/**
+	 * The clients whose metrics are exported.
+	 */
+	private List<Client> myClients;
+	
+	/**
+	 * The server's subscription to the bots' events, polled on
+	 * each scrape.
+	 */
+	private EventBus.Subscription myEvents;
+	
+	/**
+	 * Number of events seen, by type.
+	 */
+	private long[] myEventCounts;
+	
+	/**
+	 * Number of events published while the subscription was too
+	 * far behind to see them.
+	 */
+	private long myMissedEvents;
+	
+	/**
+	 * Start a metrics server on the loopback interface.
+	 * @param thePort the port, or 0 for any free port.
+	 * @throws IOException if the port cannot be bound.
+	 */
+	public MetricsServer(int thePort) throws IOException {
+		myClients = new CopyOnWriteArrayList<Client>();
+		myEventCounts = new long[BotEvent.Type.values().length];
+		myEvents = EventBus.getInstance().subscribe(this, null);
+		myServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), thePort), 0);
+		myServer.createContext("/metrics", this::handle);
+		myServer.start();
+	}
+	
+	/**
+	 * Return the metrics server on Config.METRICS_PORT, starting it
+	 * if necessary.
+	 * @return the server, or null if it is disabled or failed to start.
+	 */
+	public static synchronized MetricsServer getInstance() {
+		if (myInstance == null && Config.METRICS_PORT > 0) {
+			try {
+				myInstance = new MetricsServer(Config.METRICS_PORT);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return myInstance;
+	}
+	
+	/**
+	 * Export the metrics of a client.
+	 * @param theClient the client.
+	 */
+	public void register(Client theClient) {
+		myClients.add(theClient);
+	}
+	
+	/**
+	 * Stop exporting the metrics of a client. The server stops once
+	 * no client is left.
+	 * @param theClient the client.
+	 */
+	public void unregister(Client theClient) {
+		myClients.remove(theClient);
+		
+		synchronized (MetricsServer.class) {
+			if (myClients.isEmpty() && myInstance == this) {
+				myInstance = null;
+				stop();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the port the server listens on.
+	 * @return the port.
+	 */
+	public int getPort() {
+		return myServer.getAddress().getPort();
+	}
+	
+	/**
+	 * Stop the server.
+	 */
+	public void stop() {
+		myEvents.cancel();
+		myServer.stop(0);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Counts the event.
+	 */
+	@Override
+	public void onEvent(BotEvent theEvent) {
+		myEventCounts[theEvent.getType().ordinal()]++;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Counts the missed events.
+	 */
+	@Override
+	public void endOfBatch(long theMissed) {
+		myMissedEvents += theMissed;
+	}
+	
+	/**
+	 * Render the current metrics of every registered client.
+	 * @return the metrics in the Prometheus text format.
+	 */
+	public synchronized String scrape() {
+		myEvents.poll();
+		StringBuilder sb = new StringBuilder(4096 + myClients.size() * 1024);
+		Client[] clients = myClients.toArray(new Client[0]);
+		
+		int dataSockets = 0;
+		int lobbySockets = 0;
+		int inLobby = 0;
+		long received = 0;
+		long sent = 0;
+		long reconnects = 0;
+		int reconnecting = 0;
+		LatencyHistogram logins = new LatencyHistogram();
+		LatencyHistogram recoveries = new LatencyHistogram();
+		
+		header(sb, "echobot_bot_connected", "gauge", "Whether a socket of the bot is open.");
+		for (Client client : clients) {
+			boolean data = client.isDataConnected();
+			boolean lobby = client.isLobbyConnected();
+			dataSockets += data ? 1 : 0;
+			lobbySockets += lobby ? 1 : 0;
+			sample(sb, "echobot_bot_connected", client, "socket", "data", data ? 1 : 0);
+			sample(sb, "echobot_bot_connected", client, "socket", "lobby", lobby ? 1 : 0);
+		}
+		
+		header(sb, "echobot_bot_in_lobby", "gauge", "Whether the bot is in a custom game lobby.");
+		int[] lobbyStates = new int[LobbyState.values().length];
+		for (Client client : clients) {
+			LobbyState state = client.getLobbyState();
+			lobbyStates[state.ordinal()]++;
+			boolean lobby = state != LobbyState.IDLE;
+			inLobby += lobby ? 1 : 0;
+			sample(sb, "echobot_bot_in_lobby", client, null, null, lobby ? 1 : 0);
+		}
+		
+		header(sb, "echobot_bot_status", "gauge", "Online status of the bot.");
+		for (Client client : clients) {
+			sample(sb, "echobot_bot_status", client, null, null, client.getStatus());
+		}
+		
+		header(sb, "echobot_bot_messages_received_total", "counter", "Messages received by the bot.");
+		for (Client client : clients) {
+			long count = client.getMessageStats().getCount();
+			received += count;
+			sample(sb, "echobot_bot_messages_received_total", client, null, null, count);
+		}
+		
+		header(sb, "echobot_bot_messages_sent_total", "counter", "Messages sent by the bot.");
+		for (Client client : clients) {
+			long count = client.getSentMessageCount();
+			sent += count;
+			sample(sb, "echobot_bot_messages_sent_total", client, null, null, count);
+		}
+		
+		header(sb, "echobot_bot_reconnects_total", "counter", "Attempts of the bot to reconnect to the data server.");
+		for (Client client : clients) {
+			int count = client.getReconnectCount();
+			reconnects += count;
+			sample(sb, "echobot_bot_reconnects_total", client, null, null, count);
+		}
+		
+		header(sb, "echobot_bot_reconnecting", "gauge", "Whether the bot lost its data connection and is reconnecting.");
+		for (Client client : clients) {
+			boolean lost = client.isReconnecting();
+			reconnecting += lost ? 1 : 0;
+			sample(sb, "echobot_bot_reconnecting", client, null, null, lost ? 1 : 0);
+		}
+		
+		header(sb, "echobot_bot_recovery_seconds", "gauge", "Time the bot's last reconnect took to be accepted.");
+		for (Client client : clients) {
+			double millis = client.getRecoveryTime();
+			if (millis >= 0) {
+				recoveries.record((long) (millis * 1e6));
+				sample(sb, "echobot_bot_recovery_seconds", client, null, null, millis / 1000);
+			}
+		}
+		
+		header(sb, "echobot_bot_login_seconds", "gauge", "Duration of the bot's last login.");
+		for (Client client : clients) {
+			double millis = client.getLoginTime();
+			if (millis >= 0) {
+				logins.record((long) (millis * 1e6));
+				sample(sb, "echobot_bot_login_seconds", client, null, null, millis / 1000);
+			}
+		}
+		
+		header(sb, "echobot_bot_keepalive_rtt_seconds", "gauge", "Round trip of the last data socket keepalive.");
+		for (Client client : clients) {
+			double millis = client.getKeepaliveRoundTrip();
+			if (millis >= 0) {
+				sample(sb, "echobot_bot_keepalive_rtt_seconds", client, null, null, millis / 1000);
+			}
+		}
+		
+		header(sb, "echobot_bot_lobby_rtt_seconds", "gauge", "Round trip of the last game lobby ping.");
+		for (Client client : clients) {
+			ClockSync clock = client.getClockSync();
+			double millis = clock == null ? -1 : clock.getRoundTripTime();
+			if (millis >= 0) {
+				sample(sb, "echobot_bot_lobby_rtt_seconds", client, null, null, millis / 1000);
+			}
+		}
+		
+		// Fleet totals.
+		header(sb, "echobot_bots", "gauge", "Bots in the fleet.");
+		sb.append("echobot_bots ").append(clients.length).append('\n');
+		
+		header(sb, "echobot_connected_sockets", "gauge", "Open sockets of the fleet.");
+		sb.append("echobot_connected_sockets{socket=\"data\"} ").append(dataSockets).append('\n');
+		sb.append("echobot_connected_sockets{socket=\"lobby\"} ").append(lobbySockets).append('\n');
+		
+		header(sb, "echobot_bots_in_lobby", "gauge", "Bots in a custom game lobby.");
+		sb.append("echobot_bots_in_lobby ").append(inLobby).append('\n');
+		
+		header(sb, "echobot_bots_lobby_state", "gauge", "Bots by stage of their lobby visit.");
+		for (LobbyState state : LobbyState.values()) {
+			sb.append("echobot_bots_lobby_state{state=\"").append(state.name().toLowerCase())
+				.append("\"} ").append(lobbyStates[state.ordinal()]).append('\n');
+		}
+		
+		header(sb, "echobot_messages_received_total", "counter", "Messages received by the fleet.");
+		sb.append("echobot_messages_received_total ").append(received).append('\n');
+		
+		header(sb, "echobot_messages_sent_total", "counter", "Messages sent by the fleet.");
+		sb.append("echobot_messages_sent_total ").append(sent).append('\n');
+		
+		header(sb, "echobot_reconnects_total", "counter", "Reconnects of the fleet.");
+		sb.append("echobot_reconnects_total ").append(reconnects).append('\n');
+		
+		header(sb, "echobot_bots_reconnecting", "gauge", "Bots reconnecting to the data server.");
+		sb.append("echobot_bots_reconnecting ").append(reconnecting).append('\n');
+		
+		header(sb, "echobot_recovery_seconds", "summary", "Times to recover of the fleet's last reconnects.");
+		summary(sb, "echobot_recovery_seconds", "", recoveries);
+		
+		header(sb, "echobot_login_seconds", "summary", "Login durations of the fleet.");
+		summary(sb, "echobot_login_seconds", "", logins);
+		
+		// Every message handled since start, by type.
+		MessageStats global = MessageStats.getGlobal();
+		header(sb, "echobot_messages_total", "counter", "Messages received since start, by type.");
+		for (int i = 0; i < MessageStats.TYPES; i++) {
+			long count = global.getCount(i);
+			if (count != 0) {
+				sb.append("echobot_messages_total{type=\"").append(typeName(i)).append("\"} ")
+					.append(count).append('\n');
+			}
+		}
+		
+		header(sb, "echobot_message_latency_seconds", "summary", "Message handling latency, by type.");
+		for (int i = 0; i < MessageStats.TYPES; i++) {
+			if (global.getCount(i) != 0) {
+				summary(sb, "echobot_message_latency_seconds", "type=\"" + typeName(i) + "\"",
+						global.getLatency(i));
+			}
+		}
+		
+		// Connects, by host.
+		Map<String, ConnectStats> hosts = ConnectStats.getAll();
+		header(sb, "echobot_connect_seconds", "summary", "Time taken to connect, by host.");
+		for (Map.Entry<String, ConnectStats> host : hosts.entrySet()) {
+			summary(sb, "echobot_connect_seconds", label("host", host.getKey()), host.getValue().getLatency());
+		}
+		
+		header(sb, "echobot_connect_failures_total", "counter", "Connects that failed or timed out, by host.");
+		for (Map.Entry<String, ConnectStats> host : hosts.entrySet()) {
+			sb.append("echobot_connect_failures_total{").append(label("host", host.getKey())).append("} ")
+				.append(host.getValue().getFailureCount()).append('\n');
+		}
+		
+		// Events, by type.
+		header(sb, "echobot_events_total", "counter", "Events published by the bots, by type.");
+		for (BotEvent.Type type : BotEvent.Type.values()) {
+			sb.append("echobot_events_total{type=\"").append(type.name().toLowerCase()).append("\"} ")
+				.append(myEventCounts[type.ordinal()]).append('\n');
+		}
+		
+		header(sb, "echobot_events_missed_total", "counter", "Events published while the exporter was behind.");
+		sb.append("echobot_events_missed_total ").append(myMissedEvents).append('\n');
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Answer a scrape.
+	 * @param theExchange the HTTP exchange.
+	 * @throws IOException if the response cannot be sent.
+	 */
+	private void handle(HttpExchange theExchange) throws IOException {
+		try {
+			if (!theExchange.getRequestMethod().equals("GET")) {
+				theExchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			
+			byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+			theExchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			theExchange.sendResponseHeaders(200, body.length);
+			
+			try (OutputStream output = theExchange.getResponseBody()) {
+				output.write(body);
+			}
+		} finally {
+			theExchange.close();
+		}
+	}
+	
+	/**
+	 * Append the HELP and TYPE lines of a metric.
+	 * @param theBuilder the output.
+	 * @param theName the metric's name.
+	 * @param theType the metric's type.
+	 * @param theHelp the metric's description.
+	 */
+	private static void header(StringBuilder theBuilder, String theName, String theType, String theHelp) {
+		theBuilder.append("# HELP ").append(theName).append(' ').append(theHelp).append('\n');
+		theBuilder.append("# TYPE ").append(theName).append(' ').append(theType).append('\n');
+	}
+	
+	/**
+	 * Append a sample of a bot's metric.
+	 * @param theBuilder the output.
+	 * @param theName the metric's name.
+	 * @param theClient the bot.
+	 * @param theLabel the name of an additional label, or null.
+	 * @param theLabelValue the value of the additional label.
+	 * @param theValue the sample's value.
+	 */
+	private static void sample(StringBuilder theBuilder, String theName, Client theClient,
+			String theLabel, String theLabelValue, double theValue) {
+		String bot = theClient.getEmail() != null ? theClient.getEmail() : theClient.getID();
+		
+		theBuilder.append(theName).append("{bot=\"");
+		escape(theBuilder, bot);
+		theBuilder.append('"');
+		if (theLabel != null) {
+			theBuilder.append(',').append(theLabel).append("=\"");
+			escape(theBuilder, theLabelValue);
+			theBuilder.append('"');
+		}
+		theBuilder.append("} ").append(format(theValue)).append('\n');
+	}
+	
+	/**
+	 * Append the quantiles, sum and count of a latency histogram.
+	 * @param theBuilder the output.
+	 * @param theName the metric's name.
+	 * @param theLabels the labels of the series, or "".
+	 * @param theHistogram the latencies in nanoseconds.
+	 */
+	private static void summary(StringBuilder theBuilder, String theName, String theLabels,
+			LatencyHistogram theHistogram) {
+		long count = theHistogram.getCount();
+		
+		if (count != 0) {
+			for (double quantile : QUANTILES) {
+				theBuilder.append(theName).append('{').append(theLabels).append(theLabels.isEmpty() ? "" : ",")
+					.append("quantile=\"").append(quantile).append("\"} ")
+					.append(format(theHistogram.getValueAtPercentile(quantile * 100) / 1e9)).append('\n');
+			}
+		}
+		
+		String suffix = theLabels.isEmpty() ? " " : "{" + theLabels + "} ";
+		theBuilder.append(theName).append("_sum").append(suffix)
+			.append(format(theHistogram.getMean() * count / 1e9)).append('\n');
+		theBuilder.append(theName).append("_count").append(suffix).append(count).append('\n');
+	}
+	
+	/**
+	 * Returns the label value of a message type slot.
+	 * @param theSlot the slot.
+	 * @return the type, or "other".
+	 */
+	private static String typeName(int theSlot) {
+		return theSlot == MessageStats.TYPES - 1 ? "other" : String.valueOf(theSlot);
+	}
+	
+	/**
+	 * Format a sample value.
+	 * @param theValue the value.
+	 * @return the value as text.
+	 */
+	private static String format(double theValue) {
+		if (theValue == Math.rint(theValue) && Math.abs(theValue) < 1e15) {
+			return String.valueOf((long) theValue);
+		}
+		return String.valueOf(theValue);
+	}
+	
+	/**
+	 * Returns a label with its value escaped.
+	 * @param theName the label's name.
+	 * @param theValue the label's value.
+	 * @return the label as name="value".
+	 */
+	private static String label(String theName, String theValue) {
+		StringBuilder builder = new StringBuilder(theName).append("=\"");
+		escape(builder, theValue);
+		return builder.append('"').toString();
+	}
+	
+	/**
+	 * Append a label value, escaping backslashes, quotes and newlines.
+	 * @param theBuilder the output.
+	 * @param theValue the label value.
+	 */
+	private static void escape(StringBuilder theBuilder, String theValue) {
+		for (int i = 0; i < theValue.length(); i++) {
+			char c = theValue.charAt(i);
+			if (c == '\\' || c == '"') {
+				theBuilder.append('\\').append(c);
+			} else if (c == '\n') {
+				theBuilder.append("\\n");
+			} else {
+				theBuilder.append(c);
+			}
+		}
+	}
+}
@@ -1,14 +1,20 @@
 package model;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Abstract class containing core methods
@@ -16,11 +22,43 @@ import org.json.JSONObject;
  * @author Damiene Stewart
  */
 public abstract class Monitor implements Runnable {
+	
+	/**
+	 * Ends the sender thread of a blocking monitor.
+	 */
+	private final static Runnable STOP_SENDER = () -> {};
 
 	/**
 	 * The socket to communicate with and monitor.
 	 */
-	protected Socket mySocket;
+	protected volatile Socket mySocket;
+	
+	/**
+	 * The channel behind the socket when the selector engine
+	 * is in use, null in blocking mode.
+	 */
+	protected volatile SocketChannel myChannel;
+	
+	/**
+	 * The stream writing to the channel, null in blocking mode.
+	 */
+	private volatile ChannelOutputStream myChannelOutput;
+	
+	/**
+	 * The event loop of the channel, null in blocking mode.
+	 */
+	private volatile SelectorEngine.EventLoop myLoop;
+	
+	/**
+	 * Tasks waiting for the sender thread in blocking mode, or null
+	 * until the first one is handed over.
+	 */
+	private volatile BlockingQueue<Runnable> mySenderTasks;
+	
+	/**
+	 * The name of the monitor's thread.
+	 */
+	private String myName;
 	
 	/**
 	 * The client object.
@@ -29,27 +67,208 @@ public abstract class Monitor implements Runnable {
 	
 	/**
 	 * Flag indicating whether or not the run loop should
-	 * continue.
+	 * continue. Whoever clears it first owns the close.
+	 */
+	private AtomicBoolean myContinue;
+	
+	/**
+	 * Splits the bytes read from the socket into messages.
+	 */
+	private LineFramer myFramer;
+	
+	/**
+	 * Cursor over the message being processed.
+	 */
+	private JsonCursor myCursor;
+	
+	/**
+	 * The message types processSocketData handles, indexed by type.
+	 */
+	private boolean[] myHandledTypes;
+	
+	/**
+	 * Number of messages handed to processSocketData.
+	 */
+	private volatile long myParsedCount;
+	
+	/**
+	 * Number of messages skipped because their type is not handled.
+	 */
+	private volatile long mySkippedCount;
+	
+	/**
+	 * Message counts and handling latencies of this monitor.
+	 */
+	private MessageStats myStats;
+	
+	/**
+	 * The System.nanoTime() at which the last read returned.
+	 */
+	private volatile long myReadTime;
+	
+	/**
+	 * The send queue shared by every writer of this monitor.
+	 */
+	private OutboundQueue myOutbound;
+	
+	/**
+	 * The writer shared by the handlers of this monitor.
+	 */
+	private PrintWriter myWriter;
+	
+	/**
+	 * The System.nanoTime() at which the monitor was created.
+	 */
+	private long myCreatedTime;
+	
+	/**
+	 * The host to connect to.
+	 */
+	private String myHost;
+	
+	/**
+	 * The port to connect to.
+	 */
+	private int myPort;
+	
+	/**
+	 * The socket options and timeouts.
+	 */
+	private SocketProfile myProfile;
+	
+	/**
+	 * The System.nanoTime() at which the connect started.
+	 */
+	private long myConnectStart;
+	
+	/**
+	 * Closes the monitor if a non-blocking connect takes too long.
+	 */
+	private volatile TimerWheel.Timeout myConnectTimeout;
+	
+	/**
+	 * Whether the socket has connected.
 	 */
-	private boolean myContinue;
+	private volatile boolean myConnected;
 	
 	/**
-	 * Constructs a new Monitor object.
+	 * Constructs a new Monitor object. The socket is not connected
+	 * until the monitor is started, or connect() is called.
 	 * @param theClient the client object.
 	 * @param theHost the host to connect the socket to.
 	 * @param thePort the port to connect the socket to.
+	 * @param theProfile the socket options and timeouts.
 	 */
-	public Monitor(Client theClient, String theHost, int thePort) {
+	public Monitor(Client theClient, String theHost, int thePort, SocketProfile theProfile) {
+		myClient = theClient;
+		myHost = theHost;
+		myPort = thePort;
+		myProfile = theProfile;
+		myContinue = new AtomicBoolean(true);
+		myFramer = new LineFramer(8192);
+		myCursor = new JsonCursor();
+		myHandledTypes = new boolean[0];
+		myStats = new MessageStats(false);
+		myCreatedTime = System.nanoTime();
+	}
+	
+	/**
+	 * Connect and start monitoring the socket, either on the shared
+	 * selector engine or on a dedicated thread running {@link #run()}.
+	 * Returns at once: on the selector engine the connect is
+	 * non-blocking, otherwise it is made on the monitor's thread.
+	 * On the selector engine a host name is resolved on a thread of
+	 * its own, within the connect timeout, while an address such as
+	 * a game lobby's is connected to at once. If the connect fails
+	 * or times out the monitor is closed, see connectionClosed().
+	 * @param theName the name of the thread in blocking mode.
+	 */
+	public void start(String theName) {
+		myName = theName;
+		if (!SelectorEngine.isEnabled()) {
+			mySocket = new Socket();
+			BotThreads.start(this, theName);
+			return;
+		}
+		
+		myConnectStart = System.nanoTime();
+		myLoop = SelectorEngine.getInstance().nextLoop();
+		myConnectTimeout = TimerWheel.getInstance().schedule(this::connectTimedOut, myProfile.getConnectTimeout());
+		
+		if (isAddress(myHost)) {
+			connectChannel();
+		} else {
+			BotThreads.start(this::connectChannel, theName + "-resolve");
+		}
+	}
+	
+	/**
+	 * Resolve the host and start the non-blocking connect of the
+	 * channel, then hand the channel to the monitor's event loop.
+	 */
+	private void connectChannel() {
 		try {
-			mySocket = new Socket(theHost, thePort);
-		} catch (UnknownHostException e) {
-			e.printStackTrace();
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getByName(myHost), myPort);
+			SocketChannel channel = SocketChannel.open();
+			myChannel = channel;
+			myChannelOutput = new ChannelOutputStream(this, channel);
+			mySocket = channel.socket();
+			if (!myContinue.get()) {
+				// Stopped before there was a socket to close.
+				stopMonitor();
+				return;
+			}
+			myProfile.apply(channel);
+			channel.configureBlocking(false);
+			
+			if (channel.connect(address)) {
+				connectFinished();
+			}
+			myLoop.register(this);
 		} catch (IOException e) {
-			e.printStackTrace();
+			connectFailed(e);
+		}
+	}
+	
+	/**
+	 * Returns true if a host is given as an IPv4 or IPv6 address,
+	 * which needs no lookup.
+	 * @param theHost the host.
+	 * @return true for an address, false for a host name.
+	 */
+	private static boolean isAddress(String theHost) {
+		if (theHost.indexOf(':') >= 0) {
+			return true;
 		}
 		
-		myClient = theClient;
-		myContinue = true;
+		for (int i = 0; i < theHost.length(); i++) {
+			char c = theHost.charAt(i);
+			if (c != '.' && (c < '0' || c > '9')) {
+				return false;
+			}
+		}
+		return !theHost.isEmpty();
+	}
+	
+	/**
+	 * Connect the socket, blocking until connected. start() does
+	 * this on the monitor's thread in blocking mode.
+	 * @throws IOException if the connect fails or times out.
+	 */
+	public void connect() throws IOException {
+		Socket socket = mySocket;
+		if (socket == null) {
+			socket = mySocket = new Socket();
+		}
+		
+		myConnectStart = System.nanoTime();
+		myProfile.apply(socket);
+		InetSocketAddress address = new InetSocketAddress(myHost, myPort);
+		if (address.isUnresolved()) {
+			throw new UnknownHostException(myHost);
+		}
+		socket.connect(address, myProfile.getConnectTimeout());
+		connectFinished();
 	}
 	
 	/**
@@ -57,88 +276,480 @@ public abstract class Monitor implements Runnable {
 	 */
 	@Override
 	public void run() {
-		BufferedReader dataSocketInput = null;
-		PrintWriter writer = getWriter();
+		InputStream dataSocketInput = null;
 		
 		try {
-			dataSocketInput = new BufferedReader(new InputStreamReader(mySocket.getInputStream()));
+			connect();
+			dataSocketInput = mySocket.getInputStream();
 		} catch (IOException e) {
-
-			e.printStackTrace();
+			connectFailed(e);
+			return;
 		}
+
+		PrintWriter writer = getWriter();
 		
-		while(myContinue && !mySocket.isClosed()) {
+		while(myContinue.get() && !mySocket.isClosed()) {
 			try {
-				Object data = readSocketData(dataSocketInput);
+				JsonCursor data = readSocketData(dataSocketInput);
 				
 				if (data == null) {
 					break;
 				}
 				
-				processSocketData(data, writer);
+				dispatch(data, writer);
 			} catch (IllegalStateException e) {
 				break;
+			} catch (RuntimeException e) {
+				// A malformed message ends the connection, as on the selector engine.
+				e.printStackTrace();
+				break;
 			}
 		}
+		
+		closed();
 	}
 	
 	/**
 	 * Signal that the data monitor/processing should stop.
 	 */
 	public void stopMonitor() {
-		myContinue = false;
+		myContinue.set(false);
+		
+		BlockingQueue<Runnable> tasks = mySenderTasks;
+		if (tasks != null) {
+			tasks.add(STOP_SENDER);
+		}
+		
+		Socket socket = mySocket;
+		TimerWheel.Timeout timeout = myConnectTimeout;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+		if (socket == null) {
+			return;
+		}
+		
 		try {
-			mySocket.close();
+			socket.close();
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Called when the connection has ended. Stops the monitor, and
+	 * tells the subclass if the connection ended without the
+	 * monitor being stopped first. Safe to call more than once, and
+	 * from the reading thread and the stopping thread at once.
+	 */
+	void closed() {
+		boolean unexpected = myContinue.getAndSet(false);
+		stopMonitor();
+		
+		if (unexpected) {
+			connectionClosed();
+		}
+	}
+	
+	/**
+	 * Called once the socket is connected. Records the connect
+	 * latency and, on the selector engine, starts watching for
+	 * reads that time out.
+	 */
+	void connectFinished() {
+		TimerWheel.Timeout timeout = myConnectTimeout;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+		
+		ConnectStats.get(myHost, myPort).connected(System.nanoTime() - myConnectStart);
+		myReadTime = System.nanoTime();
+		myConnected = true;
+		
+		if (myChannel != null && myProfile.getReadTimeout() > 0) {
+			TimerWheel.getInstance().schedule(this::checkReadTimeout, myProfile.getReadTimeout());
+		}
+		connected();
+	}
+	
+	/**
+	 * Called when the connect failed. Closes the monitor.
+	 * @param theError the cause.
+	 */
+	void connectFailed(Exception theError) {
+		if (myContinue.get()) {
+			ConnectStats.get(myHost, myPort).failed();
+			String message = "Unable to connect to " + myHost + ":" + myPort + ": " + theError;
+			System.err.println(message);
+			if (myClient != null) {
+				myClient.setLastError(message);
+			}
+		}
+		closed();
+	}
+	
+	/**
+	 * Close the monitor if its non-blocking connect has not
+	 * finished in time. Runs on the timer thread.
+	 */
+	private void connectTimedOut() {
+		if (!myConnected) {
+			connectFailed(new SocketTimeoutException("connect timed out"));
+		}
+	}
+	
+	/**
+	 * Close the monitor if nothing was read within the profile's
+	 * read timeout, the selector engine's counterpart of the
+	 * blocking socket's SO_TIMEOUT. Runs on the timer thread.
+	 */
+	private void checkReadTimeout() {
+		if (!isRunning()) {
+			return;
+		}
+		
+		long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - myReadTime);
+		if (idle >= myProfile.getReadTimeout()) {
+			closed();
+		} else {
+			TimerWheel.getInstance().schedule(this::checkReadTimeout, myProfile.getReadTimeout() - idle);
+		}
+	}
+	
+	/**
+	 * Run a task on the monitor's own I/O thread rather than the
+	 * caller's: the event loop of its channel in selector mode, a
+	 * sender thread of its own in blocking mode, where the monitor's
+	 * thread is blocked reading. Timers send through this, as they
+	 * must not write to a socket on the timer thread.
+	 * @param theTask the task.
+	 */
+	public void execute(Runnable theTask) {
+		SelectorEngine.EventLoop loop = myLoop;
+		if (loop != null) {
+			loop.execute(theTask);
+			return;
+		}
+		
+		BlockingQueue<Runnable> tasks = mySenderTasks;
+		if (tasks == null) {
+			synchronized (this) {
+				tasks = mySenderTasks;
+				if (tasks == null) {
+					BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+					mySenderTasks = tasks = queue;
+					BotThreads.start(() -> runSender(queue), myName + "-sender");
+				}
+			}
+		}
+		
+		tasks.add(theTask);
+		if (!myContinue.get()) {
+			// Stopped meanwhile; the stop may have missed the new queue.
+			tasks.add(STOP_SENDER);
+		}
+	}
+	
+	/**
+	 * Run the tasks handed to the monitor, in blocking mode, until
+	 * the monitor stops.
+	 * @param theTasks the tasks.
+	 */
+	private void runSender(BlockingQueue<Runnable> theTasks) {
+		try {
+			Runnable task = null;
+			while ((task = theTasks.take()) != STOP_SENDER) {
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Called once the socket is connected, before anything is read.
+	 * Does nothing by default.
+	 */
+	protected void connected() {
+	}
+	
+	/**
+	 * Called when the server or the network closed the connection
+	 * while the monitor was running, or it could not be made. Does
+	 * nothing by default.
+	 */
+	protected void connectionClosed() {
+	}
+	
+	/**
+	 * Returns true while the monitor has not been stopped and
+	 * its socket is connected and still open.
+	 * @return true if the monitor is still running.
+	 */
+	public boolean isRunning() {
+		Socket socket = mySocket;
+		return myContinue.get() && myConnected && socket != null && !socket.isClosed();
+	}
+	
+	/**
+	 * Returns true if the socket was connected at some point.
+	 * @return true if the monitor has connected.
+	 */
+	public boolean hasConnected() {
+		return myConnected;
+	}
+	
+	/**
+	 * Returns the System.nanoTime() at which data was last
+	 * written to the socket.
+	 * @return the time of the last write.
+	 */
+	public long getLastWriteTime() {
+		OutboundQueue outbound = myOutbound;
+		return outbound == null ? myCreatedTime : outbound.getLastFlushTime();
+	}
+	
+	/**
+	 * Returns the number of messages written to the socket.
+	 * @return the number of sent messages.
+	 */
+	public long getSentMessageCount() {
+		OutboundQueue outbound = myOutbound;
+		return outbound == null ? 0 : outbound.getWriteCount();
+	}
+	
+	/**
+	 * Returns the number of messages that were processed.
+	 * @return the number of parsed messages.
+	 */
+	public long getParsedMessageCount() {
+		return myParsedCount;
+	}
+	
+	/**
+	 * Returns the number of messages that were skipped without
+	 * being parsed, as no handler exists for their type.
+	 * @return the number of skipped messages.
+	 */
+	public long getSkippedMessageCount() {
+		return mySkippedCount;
+	}
+	
+	/**
+	 * Returns the message counts by type and the handling latency
+	 * of this monitor.
+	 * @return the message statistics.
+	 */
+	public MessageStats getStats() {
+		return myStats;
+	}
+	
+	/**
+	 * Declare the message types processSocketData handles. Messages
+	 * of any other type are dropped after peeking at their type.
+	 * @param theTypes the handled message types.
+	 */
+	protected void setHandledTypes(int... theTypes) {
+		int max = -1;
+		for (int type : theTypes) {
+			max = Math.max(max, type);
+		}
+		
+		myHandledTypes = new boolean[max + 1];
+		for (int type : theTypes) {
+			myHandledTypes[type] = true;
+		}
+	}
+	
+	/**
+	 * Peek at the type of a message and hand it to processSocketData
+	 * only if that type is handled. Counts the message, and records
+	 * how long it took from its read until it was handled.
+	 * @param theData the message.
+	 * @param theWriter the writer to send the response with.
+	 */
+	private void dispatch(JsonCursor theData, PrintWriter theWriter) {
+		int type = theData.peekType();
+		MessageStats global = MessageStats.getGlobal();
+		myStats.received(type);
+		global.received(type);
+		
+		if (type < 0 || type >= myHandledTypes.length || !myHandledTypes[type]) {
+			mySkippedCount++;
+			return;
+		}
+		
+		myParsedCount++;
+		processSocketData(theData, theWriter);
+		
+		long latency = System.nanoTime() - myReadTime;
+		myStats.handled(type, latency);
+		global.handled(type, latency);
+	}
+	
 	/**
 	 * Process the data being read from the socket.
-	 * @param theData the the data being processed.
+	 * @param theData the the data being processed. Only valid until
+	 * the method returns.
 	 * @param theWriter the writer to send the response with.
 	 */
-	protected abstract void processSocketData(Object theData, PrintWriter theWriter);
+	protected abstract void processSocketData(JsonCursor theData, PrintWriter theWriter);
 	
 	/**
-	 * Read the socket data.
-	 * @return socket data as an Object. Need to recast.
+	 * Read the socket data. Replies to the messages already read
+	 * are flushed before blocking for more.
+	 * @return socket data as a cursor over the next message.
 	 * @throws IllegalStateException if no data received.
 	 */
-	protected Object readSocketData(BufferedReader theInput) {
-		String data = null;
+	protected JsonCursor readSocketData(InputStream theInput) {
 		try {
-			data = theInput.readLine();
+			while (!myFramer.nextLine()) {
+				getOutbound().endBurst();
+				int read = myFramer.read(theInput);
+				myReadTime = System.nanoTime();
+				getOutbound().beginBurst();
+				
+				if (read < 0)
+					throw new IllegalStateException("No data retrieved from data socket.");
+			}
 		} catch (IOException e) {
 			return null;
 		}
 		
-		if (data == null)
-			throw new IllegalStateException("No data retrieved from data socket.");
+		return myCursor.reset(myFramer.getBuffer(), myFramer.getLineStart(), myFramer.getLineLength());
+	}
+	
+	/**
+	 * Called by the selector engine when the channel is readable.
+	 * Reads what is available and processes every complete line,
+	 * flushing the replies together afterwards.
+	 * @return false if the channel reached end of stream or the
+	 * monitor was stopped, true otherwise.
+	 * @throws IOException if the read fails.
+	 */
+	boolean readChannel() throws IOException {
+		if (myFramer.read(myChannel) < 0) {
+			return false;
+		}
+		myReadTime = System.nanoTime();
 		
-		if (data.charAt(0) == '{') {
-			return new JSONObject(data);
-		} else {
-			return new JSONArray(data);
+		PrintWriter writer = getWriter();
+		OutboundQueue outbound = getOutbound();
+		outbound.beginBurst();
+		try {
+			while (myContinue.get() && myFramer.nextLine()) {
+				myCursor.reset(myFramer.getBuffer(), myFramer.getLineStart(), myFramer.getLineLength());
+				dispatch(myCursor, writer);
+			}
+		} finally {
+			outbound.endBurst();
 		}
+		
+		return isRunning();
+	}
+	
+	/**
+	 * Called by the selector engine once the channel is registered.
+	 * @param theKey the channel's key.
+	 */
+	void registered(SelectionKey theKey) {
+		myChannelOutput.attach(theKey);
+	}
+	
+	/**
+	 * Called by the selector engine when the channel is writable
+	 * again. Writes the bytes that did not fit before.
+	 * @throws IOException if the write fails.
+	 */
+	void writeChannel() throws IOException {
+		myChannelOutput.writeBacklog();
 	}
 	
 	/**
-	 * Get the writer to write data to the socket.
+	 * Get the writer to write data to the socket. The writer
+	 * is shared by every handler of this monitor.
 	 * @return PrintWriter to write data.
 	 */
-	protected PrintWriter getWriter() {
-		PrintWriter writer = null;
+	protected synchronized PrintWriter getWriter() {
+		if (myWriter == null) {
+			try {
+				myWriter = new PrintWriter(getOutputStream(), true);
+			} catch (IOException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+		}
+		
+		return myWriter;
+	}
+	
+	/**
+	 * Returns the send queue of this monitor's socket.
+	 * @return the send queue.
+	 * @throws IOException if the socket's stream cannot be opened.
+	 */
+	public OutboundQueue getOutbound() throws IOException {
+		return (OutboundQueue) getOutputStream();
+	}
+	
+	/**
+	 * Send an encoded message.
+	 * @param theEncoder the encoder holding the message.
+	 */
+	protected void send(OutboundEncoder theEncoder) {
+		send(theEncoder.getBuffer(), theEncoder.getLength());
+	}
+	
+	/**
+	 * Send a pre-encoded message, see OutboundEncoder.template().
+	 * @param theMessage the message, including the line terminator.
+	 */
+	protected void send(byte[] theMessage) {
+		send(theMessage, theMessage.length);
+	}
+	
+	/**
+	 * Write bytes to the socket in a single write.
+	 * @param theBytes the bytes.
+	 * @param theLength the number of bytes to write.
+	 */
+	private void send(byte[] theBytes, int theLength) {
 		try {
-			writer = new PrintWriter(mySocket.getOutputStream(), true);
+			getOutputStream().write(theBytes, 0, theLength);
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+	}
+	
+	/**
+	 * Get the stream that writes to the socket. In selector mode
+	 * the socket's own stream cannot be used as the channel is
+	 * non-blocking, so the channel is written to directly and
+	 * what it cannot take waits for the event loop.
+	 * The stream is the send queue shared by every writer of
+	 * this monitor, so each write is atomic.
+	 * @return the socket's output stream.
+	 * @throws IOException if the stream cannot be created.
+	 */
+	protected synchronized OutputStream getOutputStream() throws IOException {
+		if (myOutbound == null) {
+			if (!myConnected) {
+				throw new IOException("Not connected to " + myHost + ":" + myPort + ".");
+			}
+			
+			if (myChannel != null) {
+				myOutbound = new OutboundQueue(myChannelOutput, this::execute);
+			} else {
+				myOutbound = new OutboundQueue(mySocket.getOutputStream(), this::execute);
+			}
+		}
 		
-		return writer;
+		return myOutbound;
 	}
 	
 	/**
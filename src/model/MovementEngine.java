@@ -0,0 +1,210 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dead-reckoning engine for the position echo. Keeps the followed
+ * player's last known position and velocity from the "18"
+ * corrections, and on a fixed tick extrapolates where the player is
+ * now. The bot's position is only sent when the server's
+ * extrapolation of the last echo has drifted from that prediction by
+ * more than a threshold, or the velocity has changed, so the bot
+ * tracks the player closely with far fewer messages. Once no
+ * correction has arrived for Config.MOVEMENT_STALE_MS the player is
+ * taken to have stopped where it was last predicted, and the engine
+ * rests until the next correction. The timer only
+ * triggers the tick; it runs on the lobby monitor's I/O thread,
+ * which sends the echo.
+ */
+public class MovementEngine implements Runnable {
+	
+	/**
+	 * The lobby monitor that sends the echoes.
+	 */
+	private GameLobbyMonitor myMonitor;
+	
+	/**
+	 * The player's last known x, y, x speed and y speed.
+	 */
+	private int[] myPlayer;
+	
+	/**
+	 * System.nanoTime() at which the player's state was received.
+	 */
+	private long myPlayerTime;
+	
+	/**
+	 * The last echoed x, y, x speed and y speed.
+	 */
+	private int[] myEcho;
+	
+	/**
+	 * System.nanoTime() at which the last echo was sent.
+	 */
+	private long myEchoTime;
+	
+	/**
+	 * Whether the player's state is known.
+	 */
+	private boolean myTracking;
+	
+	/**
+	 * Whether anything has been echoed yet.
+	 */
+	private boolean myEchoed;
+	
+	/**
+	 * Whether the tick is scheduled.
+	 */
+	private boolean myRunning;
+	
+	/**
+	 * Number of corrections received.
+	 */
+	private volatile long myCorrectionCount;
+	
+	/**
+	 * Number of echoes sent.
+	 */
+	private volatile long myEchoCount;
+	
+	/**
+	 * Construct a new movement engine.
+	 * @param theMonitor the lobby monitor that sends the echoes.
+	 */
+	public MovementEngine(GameLobbyMonitor theMonitor) {
+		myMonitor = theMonitor;
+		myPlayer = new int[4];
+		myEcho = new int[4];
+	}
+	
+	/**
+	 * Record a position correction of the followed player, and
+	 * start ticking if not yet running.
+	 * @param xPos the player's x-axis position.
+	 * @param yPos the player's y-axis position.
+	 * @param xV the player's x-axis speed.
+	 * @param yV the player's y-axis speed.
+	 */
+	public synchronized void update(int xPos, int yPos, int xV, int yV) {
+		myPlayer[0] = xPos;
+		myPlayer[1] = yPos;
+		myPlayer[2] = xV;
+		myPlayer[3] = yV;
+		myPlayerTime = System.nanoTime();
+		myTracking = true;
+		myCorrectionCount++;
+		
+		if (!myRunning) {
+			myRunning = true;
+			run();
+		}
+	}
+	
+	/**
+	 * One tick: send an echo if the prediction and the last echo
+	 * have drifted apart, then schedule the next tick. Runs on the
+	 * monitor's I/O thread.
+	 */
+	@Override
+	public synchronized void run() {
+		if (!myMonitor.isRunning()) {
+			myRunning = false;
+			return;
+		}
+		
+		if (myTracking) {
+			long now = System.nanoTime();
+			long stale = TimeUnit.MILLISECONDS.toNanos(Config.MOVEMENT_STALE_MS);
+			boolean resting = now - myPlayerTime >= stale;
+			if (resting) {
+				stop(stale, now);
+			}
+			
+			int x = extrapolate(myPlayer[0], myPlayer[2], now - myPlayerTime);
+			int y = extrapolate(myPlayer[1], myPlayer[3], now - myPlayerTime);
+			
+			if (!myEchoed || velocityChanged() || error(x, y, now) > Config.MOVEMENT_ERROR_THRESHOLD) {
+				myEcho[0] = x;
+				myEcho[1] = y;
+				myEcho[2] = myPlayer[2];
+				myEcho[3] = myPlayer[3];
+				myEchoTime = now;
+				myEchoed = true;
+				myEchoCount++;
+				myMonitor.echoMovement(x, y, myEcho[2], myEcho[3]);
+			}
+			
+			if (resting) {
+				myRunning = false;
+				return;
+			}
+		}
+		
+		TimerWheel.getInstance().schedule(() -> myMonitor.execute(this), Config.MOVEMENT_TICK_MS);
+	}
+	
+	/**
+	 * Returns the number of position corrections received.
+	 * @return the number of corrections.
+	 */
+	public long getCorrectionCount() {
+		return myCorrectionCount;
+	}
+	
+	/**
+	 * Returns the number of echoes sent.
+	 * @return the number of echoes.
+	 */
+	public long getEchoCount() {
+		return myEchoCount;
+	}
+	
+	/**
+	 * Take the player to have stopped where it was predicted after
+	 * the given time, as no correction has arrived since.
+	 * @param theElapsedNanos the time the player kept moving.
+	 * @param theNow the current System.nanoTime().
+	 */
+	private void stop(long theElapsedNanos, long theNow) {
+		myPlayer[0] = extrapolate(myPlayer[0], myPlayer[2], theElapsedNanos);
+		myPlayer[1] = extrapolate(myPlayer[1], myPlayer[3], theElapsedNanos);
+		myPlayer[2] = 0;
+		myPlayer[3] = 0;
+		myPlayerTime = theNow;
+	}
+	
+	/**
+	 * Returns true if the player's velocity differs from the echoed one.
+	 * @return true if the velocity changed.
+	 */
+	private boolean velocityChanged() {
+		return myPlayer[2] != myEcho[2] || myPlayer[3] != myEcho[3];
+	}
+	
+	/**
+	 * Distance between the predicted player position and where the
+	 * server places the bot by extrapolating the last echo.
+	 * @param theX the predicted x position.
+	 * @param theY the predicted y position.
+	 * @param theNow the current System.nanoTime().
+	 * @return the distance.
+	 */
+	private double error(int theX, int theY, long theNow) {
+		int botX = extrapolate(myEcho[0], myEcho[2], theNow - myEchoTime);
+		int botY = extrapolate(myEcho[1], myEcho[3], theNow - myEchoTime);
+		return Math.hypot(theX - botX, theY - botY);
+	}
+	
+	/**
+	 * Move a position along its velocity.
+	 * @param thePosition the position.
+	 * @param theVelocity the velocity, per Config.VELOCITY_TIME_UNIT_MS.
+	 * @param theElapsedNanos the time elapsed.
+	 * @return the new position.
+	 */
+	private static int extrapolate(int thePosition, int theVelocity, long theElapsedNanos) {
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(theElapsedNanos);
+		return (int) (thePosition + theVelocity * elapsed / Config.VELOCITY_TIME_UNIT_MS);
+	}
+}
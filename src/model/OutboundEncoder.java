@@ -0,0 +1,163 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes fixed-shape outbound messages, such as [3,t,x,y,vx,vy]
+ * and [4,n], straight from primitives into a reusable byte buffer.
+ * No JSONArray or String is created along the way. An encoder is
+ * not thread-safe, so each sending thread needs its own.
+ */
+public class OutboundEncoder {
+	
+	/**
+	 * The buffer holding the encoded message.
+	 */
+	private byte[] myBuffer;
+	
+	/**
+	 * Length of the encoded message.
+	 */
+	private int myLength;
+	
+	/**
+	 * Whether no value has been added since begin().
+	 */
+	private boolean myFirst;
+	
+	/**
+	 * Construct a new encoder.
+	 */
+	public OutboundEncoder() {
+		myBuffer = new byte[128];
+	}
+	
+	/**
+	 * Encode a constant message once, for messages that never change
+	 * such as [19].
+	 * @param theMessage the message, without the line terminator.
+	 * @return the message and line terminator as bytes.
+	 */
+	public static byte[] template(String theMessage) {
+		return (theMessage + "\n").getBytes(StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Start a new array message.
+	 * @return this encoder.
+	 */
+	public OutboundEncoder begin() {
+		myLength = 0;
+		myFirst = true;
+		put('[');
+		return this;
+	}
+	
+	/**
+	 * Add a number to the array.
+	 * @param theValue the value.
+	 * @return this encoder.
+	 */
+	public OutboundEncoder add(long theValue) {
+		if (!myFirst) {
+			put(',');
+		}
+		myFirst = false;
+		
+		if (theValue == Long.MIN_VALUE) {
+			for (byte b : Long.toString(theValue).getBytes(StandardCharsets.US_ASCII)) {
+				put(b);
+			}
+			return this;
+		}
+		
+		long value = theValue;
+		if (value < 0) {
+			put('-');
+			value = -value;
+		}
+		
+		int digits = 1;
+		for (long rest = value / 10; rest > 0; rest /= 10) {
+			digits++;
+		}
+		
+		ensureCapacity(digits);
+		for (int i = myLength + digits - 1; i >= myLength; i--) {
+			myBuffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		myLength += digits;
+		return this;
+	}
+	
+	/**
+	 * Add an element of a received message to the array, exactly as
+	 * it was received.
+	 * @param theCursor the received message.
+	 * @param theIndex the element's index.
+	 * @return this encoder.
+	 */
+	public OutboundEncoder add(JsonCursor theCursor, int theIndex) {
+		if (!myFirst) {
+			put(',');
+		}
+		myFirst = false;
+		
+		ensureCapacity(theCursor.getRawLength(theIndex));
+		myLength += theCursor.copyRaw(theIndex, myBuffer, myLength);
+		return this;
+	}
+	
+	/**
+	 * Close the array and terminate the line.
+	 * @return this encoder.
+	 */
+	public OutboundEncoder end() {
+		put(']');
+		put('\n');
+		return this;
+	}
+	
+	/**
+	 * Returns the buffer holding the encoded message.
+	 * @return the buffer.
+	 */
+	public byte[] getBuffer() {
+		return myBuffer;
+	}
+	
+	/**
+	 * Returns the length of the encoded message.
+	 * @return the length in bytes.
+	 */
+	public int getLength() {
+		return myLength;
+	}
+	
+	@Override
+	public String toString() {
+		return new String(myBuffer, 0, myLength, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Append a single byte.
+	 * @param theByte the byte.
+	 */
+	private void put(int theByte) {
+		ensureCapacity(1);
+		myBuffer[myLength++] = (byte) theByte;
+	}
+	
+	/**
+	 * Make room for more bytes.
+	 * @param theBytes the number of bytes needed.
+	 */
+	private void ensureCapacity(int theBytes) {
+		if (myLength + theBytes > myBuffer.length) {
+			byte[] larger = new byte[Math.max(myBuffer.length * 2, myLength + theBytes)];
+			System.arraycopy(myBuffer, 0, larger, 0, myLength);
+			myBuffer = larger;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-socket send queue. Replies produced while one burst of
+ * inbound messages is handled are collected and written to the
+ * socket together when the burst ends, instead of one write (and
+ * often one TCP segment) per reply. Outside a burst, for example
+ * from timers, every write goes out immediately.
+ *
+ * The time a reply waits is bounded: a queue is flushed early once
+ * it holds Config.OUTBOUND_MAX_BATCH_BYTES, and no later than
+ * Config.OUTBOUND_MAX_DELAY_MS after its first reply was queued.
+ * That late flush is handed by the timer to the socket's own I/O
+ * thread, so the timer thread never writes.
+ */
+public class OutboundQueue extends OutputStream {
+	
+	/**
+	 * The stream to the socket.
+	 */
+	private OutputStream myOutput;
+	
+	/**
+	 * Runs the late flush on the socket's I/O thread.
+	 */
+	private Executor myExecutor;
+	
+	/**
+	 * Bytes waiting to be written.
+	 */
+	private byte[] myBuffer;
+	
+	/**
+	 * Number of bytes waiting.
+	 */
+	private int myLength;
+	
+	/**
+	 * Whether an inbound burst is being handled.
+	 */
+	private boolean myBurst;
+	
+	/**
+	 * System.nanoTime() at which the oldest waiting bytes were queued.
+	 */
+	private long myQueuedTime;
+	
+	/**
+	 * The timer that flushes the queue once the delay runs out.
+	 */
+	private TimerWheel.Timeout myFlushTimeout;
+	
+	/**
+	 * The System.nanoTime() of the last write to the socket.
+	 */
+	private volatile long myLastFlushTime;
+	
+	/**
+	 * Number of writes to the queue.
+	 */
+	private volatile long myWriteCount;
+	
+	/**
+	 * Number of writes to the socket.
+	 */
+	private volatile long myFlushCount;
+	
+	/**
+	 * Construct a new outbound queue.
+	 * @param theOutput the stream to the socket.
+	 * @param theExecutor runs the late flush on the socket's I/O thread.
+	 */
+	public OutboundQueue(OutputStream theOutput, Executor theExecutor) {
+		myOutput = theOutput;
+		myExecutor = theExecutor;
+		myBuffer = new byte[1024];
+		myLastFlushTime = System.nanoTime();
+	}
+	
+	/**
+	 * Start collecting writes instead of sending them immediately.
+	 */
+	public synchronized void beginBurst() {
+		myBurst = true;
+	}
+	
+	/**
+	 * Send everything collected since beginBurst() and go back to
+	 * sending writes immediately.
+	 * @throws IOException if the write fails.
+	 */
+	public synchronized void endBurst() throws IOException {
+		myBurst = false;
+		flushQueue();
+	}
+	
+	@Override
+	public void write(int theByte) throws IOException {
+		write(new byte[] {(byte) theByte}, 0, 1);
+	}
+	
+	@Override
+	public synchronized void write(byte[] theBytes, int theOffset, int theLength) throws IOException {
+		if (myLength + theLength > myBuffer.length) {
+			byte[] larger = new byte[Math.max(myBuffer.length * 2, myLength + theLength)];
+			System.arraycopy(myBuffer, 0, larger, 0, myLength);
+			myBuffer = larger;
+		}
+		
+		if (myLength == 0) {
+			myQueuedTime = System.nanoTime();
+		}
+		System.arraycopy(theBytes, theOffset, myBuffer, myLength, theLength);
+		myLength += theLength;
+		myWriteCount++;
+		
+		if (!myBurst || myLength >= Config.OUTBOUND_MAX_BATCH_BYTES || isOverdue()) {
+			flushQueue();
+		} else if (myFlushTimeout == null) {
+			myFlushTimeout = TimerWheel.getInstance().schedule(() -> myExecutor.execute(this::flushOverdue),
+					Config.OUTBOUND_MAX_DELAY_MS);
+		}
+	}
+	
+	/**
+	 * Flushes are deferred while a burst is handled, so that a
+	 * PrintWriter with autoflush does not defeat the batching.
+	 * @throws IOException if the write fails.
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		if (!myBurst) {
+			flushQueue();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		myOutput.close();
+	}
+	
+	/**
+	 * Returns the System.nanoTime() at which bytes were last
+	 * written to the socket.
+	 * @return the time of the last write.
+	 */
+	public long getLastFlushTime() {
+		return myLastFlushTime;
+	}
+	
+	/**
+	 * Returns the number of writes made to the queue.
+	 * @return the number of writes.
+	 */
+	public long getWriteCount() {
+		return myWriteCount;
+	}
+	
+	/**
+	 * Returns the number of writes made to the socket.
+	 * @return the number of flushes.
+	 */
+	public long getFlushCount() {
+		return myFlushCount;
+	}
+	
+	/**
+	 * Returns the average number of queued writes sent per socket write.
+	 * @return the writes per flush.
+	 */
+	public double getWritesPerFlush() {
+		long flushes = myFlushCount;
+		return flushes == 0 ? 0 : (double) myWriteCount / flushes;
+	}
+	
+	/**
+	 * Returns true if the oldest waiting bytes have waited longer
+	 * than the maximum delay.
+	 * @return true if the queue is overdue.
+	 */
+	private boolean isOverdue() {
+		return System.nanoTime() - myQueuedTime >= TimeUnit.MILLISECONDS.toNanos(Config.OUTBOUND_MAX_DELAY_MS);
+	}
+	
+	/**
+	 * Flush a queue that has waited too long. Run on the socket's
+	 * I/O thread once the timer fires.
+	 */
+	private synchronized void flushOverdue() {
+		myFlushTimeout = null;
+		try {
+			flushQueue();
+		} catch (IOException e) {
+			// The reader will notice the broken socket.
+		}
+	}
+	
+	/**
+	 * Write the waiting bytes to the socket.
+	 * @throws IOException if the write fails.
+	 */
+	private void flushQueue() throws IOException {
+		if (myFlushTimeout != null) {
+			myFlushTimeout.cancel();
+			myFlushTimeout = null;
+		}
+		
+		if (myLength == 0) {
+			return;
+		}
+		
+		int length = myLength;
+		myLength = 0;
+		myOutput.write(myBuffer, 0, length);
+		myFlushCount++;
+		myLastFlushTime = System.nanoTime();
+	}
+}
@@ -0,0 +1,192 @@
+package model;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Brings a bot's data connection back after it was lost. Attempts
+ * are scheduled on the shared TimerWheel with exponential backoff
+ * and full jitter: the n-th attempt waits a random time between
+ * zero and Config.RECONNECT_BASE_MS * 2^n, capped at
+ * Config.RECONNECT_MAX_MS. A fleet that lost its connections at
+ * the same moment therefore comes back spread over the backoff
+ * window rather than all at once.
+ *
+ * The connection counts as recovered once the data server accepts
+ * the login token again; the time from the loss until then is
+ * recorded as the time to recover.
+ */
+public class ReconnectEngine implements Runnable {
+	
+	/**
+	 * The client whose connection is restored.
+	 */
+	private Client myClient;
+	
+	/**
+	 * Number of attempts since the connection was lost.
+	 */
+	private int myAttempts;
+	
+	/**
+	 * The System.nanoTime() at which the connection was lost, or
+	 * 0 while connected.
+	 */
+	private long myLostTime;
+	
+	/**
+	 * The next scheduled attempt.
+	 */
+	private TimerWheel.Timeout myTimeout;
+	
+	/**
+	 * Whether an attempt is scheduled and has not run yet.
+	 */
+	private boolean myScheduled;
+	
+	/**
+	 * Whether the engine has been stopped.
+	 */
+	private boolean myStopped;
+	
+	/**
+	 * Number of reconnect attempts made.
+	 */
+	private volatile int myAttemptCount;
+	
+	/**
+	 * Time the last recovery took in nanoseconds, or -1.
+	 */
+	private volatile long myRecoveryTime;
+	
+	/**
+	 * Construct a new reconnect engine.
+	 * @param theClient the client whose connection is restored.
+	 */
+	public ReconnectEngine(Client theClient) {
+		myClient = theClient;
+		myRecoveryTime = -1;
+	}
+	
+	/**
+	 * Called when the connection was lost or an attempt failed.
+	 * Schedules the next attempt. Does not block.
+	 */
+	public synchronized void connectionLost() {
+		if (myStopped || myScheduled) {
+			return;
+		}
+		
+		if (myLostTime == 0) {
+			myLostTime = System.nanoTime();
+			myAttempts = 0;
+		}
+		
+		myScheduled = true;
+		myTimeout = TimerWheel.getInstance().schedule(this, delay(myAttempts));
+	}
+	
+	/**
+	 * Called when the data server accepted the login token. Ends
+	 * the recovery, if one was in progress.
+	 * @return true if the connection had been lost.
+	 */
+	public synchronized boolean connectionRestored() {
+		if (myLostTime == 0) {
+			return false;
+		}
+		
+		long recovery = System.nanoTime() - myLostTime;
+		myRecoveryTime = recovery;
+		myLostTime = 0;
+		myAttempts = 0;
+		return true;
+	}
+	
+	/**
+	 * Cancel any scheduled attempt and make no more.
+	 */
+	public synchronized void stop() {
+		myStopped = true;
+		myScheduled = false;
+		if (myTimeout != null) {
+			myTimeout.cancel();
+			myTimeout = null;
+		}
+	}
+	
+	/**
+	 * Make an attempt. Runs on the timer thread, so the
+	 * connection is made on a thread of its own.
+	 */
+	@Override
+	public void run() {
+		synchronized (this) {
+			myScheduled = false;
+			if (myStopped) {
+				return;
+			}
+			myAttempts++;
+		}
+		
+		myAttemptCount++;
+		BotThreads.start(this::attempt, "reconnect");
+	}
+	
+	/**
+	 * Connect again, unless the engine was stopped since the attempt
+	 * was scheduled. A failed connection reports itself through
+	 * connectionLost(); a failed login is reported here.
+	 */
+	private void attempt() {
+		synchronized (this) {
+			if (myStopped) {
+				return;
+			}
+		}
+		
+		myClient.reconnect().whenComplete((success, error) -> {
+			if (error != null) {
+				error.printStackTrace();
+			}
+			if (error != null || !success) {
+				connectionLost();
+			}
+		});
+	}
+	
+	/**
+	 * Returns true while the connection is lost.
+	 * @return true if a recovery is in progress.
+	 */
+	public synchronized boolean isRecovering() {
+		return myLostTime != 0;
+	}
+	
+	/**
+	 * Returns the number of reconnect attempts made.
+	 * @return the number of attempts.
+	 */
+	public int getAttemptCount() {
+		return myAttemptCount;
+	}
+	
+	/**
+	 * Returns the time the last recovery took.
+	 * @return the time to recover in milliseconds, or -1 if the
+	 * connection was never lost and restored.
+	 */
+	public double getRecoveryTime() {
+		long recovery = myRecoveryTime;
+		return recovery < 0 ? -1 : recovery / 1e6;
+	}
+	
+	/**
+	 * Returns the delay before an attempt.
+	 * @param theAttempt the number of attempts made so far.
+	 * @return the delay in milliseconds.
+	 */
+	private static long delay(int theAttempt) {
+		long window = Config.RECONNECT_BASE_MS << Math.min(theAttempt, 20);
+		return ThreadLocalRandom.current().nextLong(Math.min(window, Config.RECONNECT_MAX_MS) + 1);
+	}
+}
@@ -0,0 +1,263 @@
+package model;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NIO I/O engine. A small, fixed set of event-loop threads
+ * multiplexes the sockets of every monitor so that a bot no
+ * longer needs a thread of its own per socket. This is the
+ * default; -Dechobot.io=blocking falls back to a thread per
+ * monitor, see Config.
+ */
+public class SelectorEngine {
+	
+	/**
+	 * The shared engine, created on first use.
+	 */
+	private static SelectorEngine myInstance;
+	
+	/**
+	 * The event loops.
+	 */
+	private EventLoop[] myLoops;
+	
+	/**
+	 * Round-robin counter used to spread monitors across loops.
+	 */
+	private AtomicInteger myNext;
+	
+	/**
+	 * Construct a new selector engine.
+	 * @param theThreads the number of event-loop threads.
+	 * @throws IOException if a selector cannot be opened.
+	 */
+	private SelectorEngine(int theThreads) throws IOException {
+		myLoops = new EventLoop[theThreads];
+		myNext = new AtomicInteger();
+		
+		for (int i = 0; i < theThreads; i++) {
+			myLoops[i] = new EventLoop(Selector.open());
+			Thread thread = new Thread(myLoops[i], "echo-bot-selector-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	/**
+	 * Returns true if the monitors should use the selector engine
+	 * instead of a blocking thread each.
+	 * @return true if the selector engine is enabled.
+	 */
+	public static boolean isEnabled() {
+		return "selector".equals(Config.IO_ENGINE);
+	}
+	
+	/**
+	 * Return the shared engine, starting its event loops if needed.
+	 * @return the selector engine.
+	 */
+	public static synchronized SelectorEngine getInstance() {
+		if (myInstance == null) {
+			try {
+				myInstance = new SelectorEngine(Config.SELECTOR_THREADS);
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to open selector.", e);
+			}
+		}
+		return myInstance;
+	}
+	
+	/**
+	 * Pick the event loop for a new monitor, spreading the monitors
+	 * evenly across the loops.
+	 * @return the event loop.
+	 */
+	EventLoop nextLoop() {
+		return myLoops[Math.floorMod(myNext.getAndIncrement(), myLoops.length)];
+	}
+	
+	/**
+	 * A single event-loop thread and its selector. Besides the I/O
+	 * of its channels it runs the tasks handed to it, so that timers
+	 * can write to a socket on the socket's own thread.
+	 */
+	static class EventLoop implements Runnable, Executor {
+		
+		/**
+		 * The selector.
+		 */
+		private Selector mySelector;
+		
+		/**
+		 * Monitors waiting to be registered with the selector.
+		 */
+		private Queue<Monitor> myPending;
+		
+		/**
+		 * Tasks waiting to run on the loop.
+		 */
+		private Queue<Runnable> myTasks;
+		
+		/**
+		 * Construct a new event loop.
+		 * @param theSelector the selector to use.
+		 */
+		public EventLoop(Selector theSelector) {
+			mySelector = theSelector;
+			myPending = new ConcurrentLinkedQueue<Monitor>();
+			myTasks = new ConcurrentLinkedQueue<Runnable>();
+		}
+		
+		/**
+		 * Queue a monitor for registration and wake the loop.
+		 * @param theMonitor the monitor.
+		 */
+		public void register(Monitor theMonitor) {
+			myPending.add(theMonitor);
+			mySelector.wakeup();
+		}
+		
+		/**
+		 * Run a task on the loop's thread and wake the loop.
+		 * @param theTask the task.
+		 */
+		@Override
+		public void execute(Runnable theTask) {
+			myTasks.add(theTask);
+			mySelector.wakeup();
+		}
+		
+		@Override
+		public void run() {
+			while (mySelector.isOpen()) {
+				try {
+					mySelector.select();
+				} catch (IOException e) {
+					e.printStackTrace();
+					return;
+				}
+				
+				registerPending();
+				runTasks();
+				
+				Iterator<SelectionKey> keys = mySelector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					
+					if (key.isValid() && key.isConnectable()) {
+						finishConnect(key);
+						continue;
+					}
+					if (key.isValid() && key.isWritable()) {
+						write(key);
+					}
+					if (key.isValid() && key.isReadable()) {
+						read(key);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Register the channels of any newly added monitors, for
+		 * the end of their connect if it is still in progress.
+		 */
+		private void registerPending() {
+			Monitor monitor = null;
+			while ((monitor = myPending.poll()) != null) {
+				try {
+					int ops = monitor.myChannel.isConnectionPending() ? SelectionKey.OP_CONNECT : SelectionKey.OP_READ;
+					monitor.myChannel.configureBlocking(false);
+					monitor.registered(monitor.myChannel.register(mySelector, ops, monitor));
+				} catch (ClosedChannelException e) {
+					monitor.closed();
+				} catch (IOException e) {
+					e.printStackTrace();
+					monitor.closed();
+				}
+			}
+		}
+		
+		/**
+		 * Run the tasks handed to the loop.
+		 */
+		private void runTasks() {
+			Runnable task = null;
+			while ((task = myTasks.poll()) != null) {
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		
+		/**
+		 * Complete a monitor's non-blocking connect, and wait for
+		 * reads from then on.
+		 * @param theKey the connectable key.
+		 */
+		private void finishConnect(SelectionKey theKey) {
+			Monitor monitor = (Monitor) theKey.attachment();
+			
+			try {
+				if (monitor.myChannel.finishConnect()) {
+					theKey.interestOps(theKey.interestOps() & ~SelectionKey.OP_CONNECT | SelectionKey.OP_READ);
+					monitor.connectFinished();
+				}
+			} catch (IOException e) {
+				theKey.cancel();
+				monitor.connectFailed(e);
+			}
+		}
+		
+		/**
+		 * Let the monitor write the bytes its channel could not take
+		 * before. Stops the monitor if the write fails.
+		 * @param theKey the writable key.
+		 */
+		private void write(SelectionKey theKey) {
+			Monitor monitor = (Monitor) theKey.attachment();
+			
+			try {
+				monitor.writeChannel();
+			} catch (IOException e) {
+				theKey.cancel();
+				monitor.closed();
+			}
+		}
+		
+		/**
+		 * Let the monitor read from its channel. Stops the monitor
+		 * on end of stream or failure, as the blocking run loop would.
+		 * @param theKey the readable key.
+		 */
+		private void read(SelectionKey theKey) {
+			Monitor monitor = (Monitor) theKey.attachment();
+			boolean open = false;
+			
+			try {
+				open = monitor.readChannel();
+			} catch (IOException e) {
+				open = false;
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				open = false;
+			}
+			
+			if (!open) {
+				theKey.cancel();
+				monitor.closed();
+			}
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk cache of login sessions, keyed by account email, so that
+ * a restarted bot can answer the data server's challenge with the
+ * token it had before instead of logging in over HTTPS again.
+ *
+ * The file is a compact binary list of entries read in one pass:
+ * a magic number and version, the entry count, then for each entry
+ * the email, player ID and token as modified UTF-8 and the time the
+ * session was saved. Changes are written back shortly after they
+ * are made, so a fleet logging in rewrites the file a few times
+ * rather than once per bot.
+ */
+public class SessionCache {
+	
+	/**
+	 * Marks a session cache file.
+	 */
+	private final static int MAGIC = 0x45425343;
+	
+	/**
+	 * Version of the file format.
+	 */
+	private final static int VERSION = 1;
+	
+	/**
+	 * Time between a change and writing it to disk, in milliseconds.
+	 */
+	private final static long SAVE_DELAY_MS = 1000;
+	
+	/**
+	 * The shared cache, loaded on first use.
+	 */
+	private static SessionCache myInstance;
+	
+	/**
+	 * The file holding the sessions.
+	 */
+	private Path myFile;
+	
+	/**
+	 * The sessions by account email.
+	 */
+	private Map<String, Session> mySessions;
+	
+	/**
+	 * Whether a save is scheduled.
+	 */
+	private boolean mySaveScheduled;
+	
+	/**
+	 * Construct a new session cache and load its file, if present.
+	 * @param theFile the file holding the sessions.
+	 */
+	public SessionCache(Path theFile) {
+		myFile = theFile;
+		mySessions = new HashMap<String, Session>();
+		load();
+	}
+	
+	/**
+	 * Return the shared session cache, or null if it is disabled.
+	 * @return the session cache.
+	 */
+	public static synchronized SessionCache getInstance() {
+		if (myInstance == null && !Config.SESSION_CACHE_FILE.isEmpty()) {
+			myInstance = new SessionCache(Paths.get(Config.SESSION_CACHE_FILE));
+		}
+		return myInstance;
+	}
+	
+	/**
+	 * Return the cached session of an account, unless it is older
+	 * than Config.SESSION_MAX_AGE_MS.
+	 * @param theEmail the account's email.
+	 * @return the session, or null if none is cached.
+	 */
+	public synchronized Session get(String theEmail) {
+		Session session = mySessions.get(theEmail);
+		
+		if (session != null && System.currentTimeMillis() - session.mySavedTime > Config.SESSION_MAX_AGE_MS) {
+			return null;
+		}
+		return session;
+	}
+	
+	/**
+	 * Cache the session of an account.
+	 * @param theEmail the account's email.
+	 * @param theID the player ID.
+	 * @param theToken the login token.
+	 */
+	public synchronized void put(String theEmail, String theID, String theToken) {
+		mySessions.put(theEmail, new Session(theID, theToken, System.currentTimeMillis()));
+		scheduleSave();
+	}
+	
+	/**
+	 * Forget the session of an account, after the server rejected it.
+	 * @param theEmail the account's email.
+	 */
+	public synchronized void remove(String theEmail) {
+		if (mySessions.remove(theEmail) != null) {
+			scheduleSave();
+		}
+	}
+	
+	/**
+	 * Write any changes not yet saved to disk now.
+	 */
+	public synchronized void flush() {
+		if (mySaveScheduled) {
+			save();
+		}
+	}
+	
+	/**
+	 * Write the sessions to disk now. The file is replaced
+	 * atomically, so a crash never leaves half a file behind.
+	 */
+	public synchronized void save() {
+		mySaveScheduled = false;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + mySessions.size() * 96);
+		
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(mySessions.size());
+			
+			for (Map.Entry<String, Session> entry : mySessions.entrySet()) {
+				output.writeUTF(entry.getKey());
+				output.writeUTF(entry.getValue().myID);
+				output.writeUTF(entry.getValue().myToken);
+				output.writeLong(entry.getValue().mySavedTime);
+			}
+			
+			Path temporary = myFile.resolveSibling(myFile.getFileName() + ".tmp");
+			Files.deleteIfExists(temporary);
+			try (SeekableByteChannel channel = createPrivate(temporary)) {
+				ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			
+			Files.move(temporary, myFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Create a new file only the owner may read and write. The tokens
+	 * are credentials, so the permissions are set as the file is
+	 * created, before anything is written to it.
+	 * @param thePath the file.
+	 * @return a channel writing to the file.
+	 * @throws IOException if the file exists or cannot be created.
+	 */
+	private static SeekableByteChannel createPrivate(Path thePath) throws IOException {
+		Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		try {
+			return Files.newByteChannel(thePath, options,
+					PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} catch (UnsupportedOperationException e) {
+			// Not a POSIX file system.
+			return Files.newByteChannel(thePath, options);
+		}
+	}
+	
+	/**
+	 * Read the sessions from disk in one pass. A missing, damaged
+	 * or outdated file leaves the cache empty.
+	 */
+	private void load() {
+		byte[] bytes = null;
+		
+		try {
+			bytes = Files.readAllBytes(myFile);
+		} catch (NoSuchFileException e) {
+			return;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				return;
+			}
+			
+			int count = input.readInt();
+			for (int i = 0; i < count; i++) {
+				String email = input.readUTF();
+				mySessions.put(email, new Session(input.readUTF(), input.readUTF(), input.readLong()));
+			}
+		} catch (IOException e) {
+			mySessions.clear();
+		}
+	}
+	
+	/**
+	 * Save shortly, unless a save is already scheduled.
+	 */
+	private void scheduleSave() {
+		if (!mySaveScheduled) {
+			mySaveScheduled = true;
+			// Off the wheel's thread, as its tasks must not block.
+			TimerWheel.getInstance().schedule(() -> BotThreads.start(this::save, "session-cache"),
+					SAVE_DELAY_MS);
+		}
+	}
+	
+	/**
+	 * A cached login session.
+	 */
+	public static class Session {
+		
+		/**
+		 * The player ID.
+		 */
+		private String myID;
+		
+		/**
+		 * The login token.
+		 */
+		private String myToken;
+		
+		/**
+		 * The time the session was saved, in milliseconds since the epoch.
+		 */
+		private long mySavedTime;
+		
+		/**
+		 * Construct a new session.
+		 * @param theID the player ID.
+		 * @param theToken the login token.
+		 * @param theSavedTime the time the session was saved.
+		 */
+		private Session(String theID, String theToken, long theSavedTime) {
+			myID = theID;
+			myToken = theToken;
+			mySavedTime = theSavedTime;
+		}
+		
+		/**
+		 * Return the player ID.
+		 * @return the player ID.
+		 */
+		public String getID() {
+			return myID;
+		}
+		
+		/**
+		 * Return the login token.
+		 * @return the login token.
+		 */
+		public String getToken() {
+			return myToken;
+		}
+	}
+}
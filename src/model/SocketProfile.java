@@ -0,0 +1,116 @@
+package model;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Socket options and timeouts for one kind of connection. The
+ * options are applied before connecting, so that buffer sizes
+ * take effect on the TCP handshake.
+ *
+ * Both profiles disable Nagle's algorithm: the monitors already
+ * send whole messages in one write and batch replies themselves
+ * (see OutboundQueue), so waiting for outstanding acknowledgements
+ * would only add latency. The data connection is long-lived and
+ * often idle, so it also uses TCP keepalive.
+ */
+public class SocketProfile {
+	
+	/**
+	 * Profile of the connection to the data server.
+	 */
+	public final static SocketProfile DATA = new SocketProfile(true, true,
+			Config.CONNECT_TIMEOUT_MS, Config.DATA_READ_TIMEOUT_MS);
+	
+	/**
+	 * Profile of the connection to a game lobby.
+	 */
+	public final static SocketProfile LOBBY = new SocketProfile(true, false,
+			Config.CONNECT_TIMEOUT_MS, Config.LOBBY_READ_TIMEOUT_MS);
+	
+	/**
+	 * Whether to disable Nagle's algorithm.
+	 */
+	private boolean myNoDelay;
+	
+	/**
+	 * Whether to enable TCP keepalive.
+	 */
+	private boolean myKeepAlive;
+	
+	/**
+	 * Connect timeout in milliseconds.
+	 */
+	private int myConnectTimeout;
+	
+	/**
+	 * Read timeout in milliseconds, or zero for none.
+	 */
+	private int myReadTimeout;
+	
+	/**
+	 * Construct a new profile. The buffer sizes are taken from Config.
+	 * @param theNoDelay whether to disable Nagle's algorithm.
+	 * @param theKeepAlive whether to enable TCP keepalive.
+	 * @param theConnectTimeout the connect timeout in milliseconds.
+	 * @param theReadTimeout the read timeout in milliseconds, or zero.
+	 */
+	public SocketProfile(boolean theNoDelay, boolean theKeepAlive, int theConnectTimeout, int theReadTimeout) {
+		myNoDelay = theNoDelay;
+		myKeepAlive = theKeepAlive;
+		myConnectTimeout = theConnectTimeout;
+		myReadTimeout = theReadTimeout;
+	}
+	
+	/**
+	 * Apply the options to an unconnected socket.
+	 * @param theSocket the socket.
+	 * @throws IOException if an option cannot be set.
+	 */
+	public void apply(Socket theSocket) throws IOException {
+		theSocket.setTcpNoDelay(myNoDelay);
+		theSocket.setKeepAlive(myKeepAlive);
+		if (Config.SOCKET_SEND_BUFFER > 0) {
+			theSocket.setSendBufferSize(Config.SOCKET_SEND_BUFFER);
+		}
+		if (Config.SOCKET_RECEIVE_BUFFER > 0) {
+			theSocket.setReceiveBufferSize(Config.SOCKET_RECEIVE_BUFFER);
+		}
+		theSocket.setSoTimeout(myReadTimeout);
+	}
+	
+	/**
+	 * Apply the options to an unconnected channel. The read timeout
+	 * does not apply to channels; see Monitor.
+	 * @param theChannel the channel.
+	 * @throws IOException if an option cannot be set.
+	 */
+	public void apply(SocketChannel theChannel) throws IOException {
+		theChannel.setOption(StandardSocketOptions.TCP_NODELAY, myNoDelay);
+		theChannel.setOption(StandardSocketOptions.SO_KEEPALIVE, myKeepAlive);
+		if (Config.SOCKET_SEND_BUFFER > 0) {
+			theChannel.setOption(StandardSocketOptions.SO_SNDBUF, Config.SOCKET_SEND_BUFFER);
+		}
+		if (Config.SOCKET_RECEIVE_BUFFER > 0) {
+			theChannel.setOption(StandardSocketOptions.SO_RCVBUF, Config.SOCKET_RECEIVE_BUFFER);
+		}
+	}
+	
+	/**
+	 * Returns the connect timeout.
+	 * @return the timeout in milliseconds.
+	 */
+	public int getConnectTimeout() {
+		return myConnectTimeout;
+	}
+	
+	/**
+	 * Returns the read timeout.
+	 * @return the timeout in milliseconds, or zero for none.
+	 */
+	public int getReadTimeout() {
+		return myReadTimeout;
+	}
+}
@@ -0,0 +1,214 @@
+package model;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel. A single thread advances the wheel one
+ * tick at a time and runs the tasks that fall due, so thousands
+ * of bots can share one timer thread instead of each sleeping on
+ * a thread of its own. Tasks run on the wheel's thread and must
+ * not block; a task that writes to a socket hands the write to
+ * the socket's monitor, see Monitor.execute().
+ */
+public class TimerWheel {
+	
+	/**
+	 * The shared wheel, created on first use.
+	 */
+	private static TimerWheel myInstance;
+	
+	/**
+	 * The slots of the wheel. Each slot is the head of a linked
+	 * list of timeouts.
+	 */
+	private Timeout[] myWheel;
+	
+	/**
+	 * Timeouts scheduled since the last tick, handed over to the
+	 * wheel's thread.
+	 */
+	private Queue<Timeout> myPending;
+	
+	/**
+	 * The length of a tick in nanoseconds.
+	 */
+	private long myTickNanos;
+	
+	/**
+	 * The number of ticks since the wheel was started. Only
+	 * touched by the wheel's thread.
+	 */
+	private long myTick;
+	
+	/**
+	 * The time at which the wheel was started.
+	 */
+	private long myStartTime;
+	
+	/**
+	 * Construct and start a new timing wheel.
+	 * @param theTickMillis the length of a tick in milliseconds.
+	 * @param theSlots the number of slots, rounded up to a power of two.
+	 */
+	public TimerWheel(long theTickMillis, int theSlots) {
+		if (theTickMillis <= 0 || theSlots <= 0)
+			throw new IllegalArgumentException("The tick and slot count must be positive.");
+		
+		myWheel = new Timeout[Integer.highestOneBit(theSlots - 1) << 1];
+		myPending = new ConcurrentLinkedQueue<Timeout>();
+		myTickNanos = TimeUnit.MILLISECONDS.toNanos(theTickMillis);
+		myStartTime = System.nanoTime();
+		
+		Thread thread = new Thread(this::run, "echo-bot-timer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Return the shared timing wheel.
+	 * @return the timing wheel.
+	 */
+	public static synchronized TimerWheel getInstance() {
+		if (myInstance == null) {
+			myInstance = new TimerWheel(Config.TIMER_TICK_MS, 512);
+		}
+		return myInstance;
+	}
+	
+	/**
+	 * Run a task once after the given delay.
+	 * @param theTask the task.
+	 * @param theDelayMillis the delay in milliseconds.
+	 * @return a handle that can cancel the task.
+	 */
+	public Timeout schedule(Runnable theTask, long theDelayMillis) {
+		long deadline = System.nanoTime() - myStartTime
+				+ TimeUnit.MILLISECONDS.toNanos(Math.max(0, theDelayMillis));
+		Timeout timeout = new Timeout(theTask, deadline);
+		myPending.add(timeout);
+		return timeout;
+	}
+	
+	/**
+	 * The wheel's run loop.
+	 */
+	private void run() {
+		while (true) {
+			long deadline = (myTick + 1) * myTickNanos;
+			long sleep = deadline - (System.nanoTime() - myStartTime);
+			
+			if (sleep > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleep);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			
+			transferPending();
+			expire(myTick);
+			myTick++;
+		}
+	}
+	
+	/**
+	 * Move newly scheduled timeouts into their slots.
+	 */
+	private void transferPending() {
+		Timeout timeout = null;
+		while ((timeout = myPending.poll()) != null) {
+			if (timeout.myCancelled) {
+				continue;
+			}
+			// Never place a timeout behind the current tick.
+			long ticks = Math.max(timeout.myDeadline / myTickNanos, myTick);
+			timeout.myRounds = (ticks - myTick) / myWheel.length;
+			int slot = (int) (ticks & (myWheel.length - 1));
+			timeout.myNext = myWheel[slot];
+			myWheel[slot] = timeout;
+		}
+	}
+	
+	/**
+	 * Run every timeout in the slot of the given tick that is due,
+	 * keeping the others for a later round.
+	 * @param theTick the current tick.
+	 */
+	private void expire(long theTick) {
+		int slot = (int) (theTick & (myWheel.length - 1));
+		Timeout timeout = myWheel[slot];
+		Timeout remaining = null;
+		myWheel[slot] = null;
+		
+		while (timeout != null) {
+			Timeout next = timeout.myNext;
+			
+			if (timeout.myCancelled) {
+				// Dropped.
+			} else if (timeout.myRounds > 0) {
+				timeout.myRounds--;
+				timeout.myNext = remaining;
+				remaining = timeout;
+			} else {
+				try {
+					timeout.myTask.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+			timeout = next;
+		}
+		
+		myWheel[slot] = remaining;
+	}
+	
+	/**
+	 * A task scheduled on the wheel.
+	 */
+	public static class Timeout {
+		
+		/**
+		 * The task to run.
+		 */
+		private Runnable myTask;
+		
+		/**
+		 * The deadline relative to the wheel's start, in nanoseconds.
+		 */
+		private long myDeadline;
+		
+		/**
+		 * Full turns of the wheel left before the task is due.
+		 */
+		private long myRounds;
+		
+		/**
+		 * The next timeout in the same slot.
+		 */
+		private Timeout myNext;
+		
+		/**
+		 * Whether the task has been cancelled.
+		 */
+		private volatile boolean myCancelled;
+		
+		/**
+		 * Construct a new timeout.
+		 * @param theTask the task to run.
+		 * @param theDeadline the deadline in nanoseconds.
+		 */
+		private Timeout(Runnable theTask, long theDeadline) {
+			myTask = theTask;
+			myDeadline = theDeadline;
+		}
+		
+		/**
+		 * Cancel the task if it has not run yet.
+		 */
+		public void cancel() {
+			myCancelled = true;
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package view;
+
+/**
+ * What a bot's controller reports to the user. Implemented by the
+ * JavaFX GUI and by the headless runner. The methods may be called
+ * from any thread.
+ */
+public interface BotView {
+	
+	/**
+	 * Report that logging the bot in failed.
+	 * @param theMessage why the login failed.
+	 */
+	void showLoginAlert(String theMessage);
+	
+	/**
+	 * Report that the bot is logged in and has its friend list.
+	 */
+	void showMainScene();
+}
@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Optional;
 
 import controller.Controller;
+import controller.FleetLogin;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
@@ -36,6 +37,10 @@ import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Priority;
 import javafx.stage.Stage;
+import model.Account;
+import model.BotEvent;
+import model.Config;
+import model.EventBus;
 import model.Friend;
 
 /**
@@ -45,12 +50,23 @@ import model.Friend;
  * @author Damiene Stewart
  * @version 1.0
  */
-public class EchoBotGUI extends Application {
+public class EchoBotGUI extends Application implements BotView, EventBus.Handler {
 	
 	/**
-	 * A count of successfully logged in clients.
+	 * The GUI's subscription to the bots' events, handled in
+	 * batches on the JavaFX thread.
 	 */
-	private int myLogins;
+	private EventBus.Subscription myEvents;
+	
+	/**
+	 * Reasons for the login failures in the current batch of events.
+	 */
+	private List<String> myLoginFailures;
+	
+	/**
+	 * Whether a friend list arrived in the current batch of events.
+	 */
+	private boolean myFriendListArrived;
 	
 	/**
 	 * A reference to the controller class that will work with the
@@ -76,6 +92,11 @@ public class EchoBotGUI extends Application {
 	 */
 	private Scene myMainScene;
 	
+	/**
+	 * Table of what every bot is doing, shown in the main scene.
+	 */
+	private FleetDashboard myDashboard;
+	
 	/**
 	 * This property indicates whether or not the loading
 	 * image should be shown.
@@ -99,7 +120,8 @@ public class EchoBotGUI extends Application {
 		myStage = null;
 		myLoginScene = null;
 		myMainScene = null;
-		myLogins = 0;
+		myLoginFailures = new ArrayList<String>();
+		myFriendListArrived = false;
 	}
 	
 	/**
@@ -120,6 +142,7 @@ public class EchoBotGUI extends Application {
 	@Override
 	public void start(Stage thePrimaryStage) throws Exception {
 		myStage = thePrimaryStage;
+		myEvents = EventBus.getInstance().subscribe(this, Platform::runLater);
 		setup();
 	}
 		
@@ -295,38 +318,35 @@ public class EchoBotGUI extends Application {
 			empty.showAndWait();
 		} else {
 			myControllerList.clear();
-			myLogins = 0;
 			showLoadingImage(true);
-			Controller c = null;
+			List<Account> accounts = new ArrayList<Account>();
 			
-			if (bot1V == 1) {
-				c = new Controller(this);
-				c.login(eFields.get(0).getText(), pFields.get(0).getText());
-				myControllerList.add(c);
-			}
-			
-			if (bot2V == 1) {
-				c = new Controller(this);
-				c.login(eFields.get(1).getText(), pFields.get(1).getText());
-				myControllerList.add(c);
-			}
-			
-			if (bot3V == 1) {
-				c = new Controller(this);
-				c.login(eFields.get(2).getText(), pFields.get(2).getText());
-				myControllerList.add(c);
-			}
-			
-			for (int i = 0; i < myControllerList.size(); i++) {
-				if(!myControllerList.get(i).isClientLoggedIn()) {
-					return;
-				};
+			for (int i = 0; i < 3; i++) {
+				if (validate(eFields.get(i).getText(), pFields.get(i).getText()) == 1) {
+					accounts.add(new Account(eFields.get(i).getText(), pFields.get(i).getText()));
+					myControllerList.add(new Controller(this));
+				}
 			}
 			
-			for (int i = 0; i < myControllerList.size(); i++) {
-				myControllerList.get(i).startDataMonitor();
+			// Each bot's data monitor starts as soon as it has logged in.
+			new FleetLogin(Config.LOGIN_CONCURRENCY)
+				.login(new ArrayList<Controller>(myControllerList), accounts, null)
+				.thenAccept(results -> Platform.runLater(() -> removeFailedLogins(results)));
+		}
+	}
+	
+	/**
+	 * Drop the bots that failed to log in, so the main scene is
+	 * shown once the others have their friend lists.
+	 * @param theResults the login results.
+	 */
+	private void removeFailedLogins(List<FleetLogin.Result> theResults) {
+		for (FleetLogin.Result result : theResults) {
+			if (!result.isSuccess()) {
+				myControllerList.remove(result.getController());
 			}
 		}
+		showMainSceneIfReady();
 	}
 	
 	/**
@@ -372,6 +392,7 @@ public class EchoBotGUI extends Application {
 		List<Label> labels = new ArrayList<Label>();
 		List<ComboBox<Friend>> friends = new ArrayList<ComboBox<Friend>>();
 		List<Button> buttons = new ArrayList<Button>();
+		List<Button> addButtons = new ArrayList<Button>();
 		
 		// Create labels.
 		for (int i = 0; i < myControllerList.size(); i++) {
@@ -416,6 +437,23 @@ public class EchoBotGUI extends Application {
 			buttons.add(goButton);
 		}
 		
+		// Create add buttons, for accepting requests from several friends.
+		for (int i = 0; i < myControllerList.size(); i++) {
+			final int z = i;
+			Button addButton = new Button("Add");
+			addButton.setOnAction(event -> {
+				Friend f = friends.get(z).getValue();
+				if (f != null) {
+					myControllerList.get(z).addFriend(f);
+					Alert info = new Alert(AlertType.INFORMATION);
+					info.setHeaderText(null);
+					info.setContentText("Bot will also accept requests from " + f.getUserName() + ".");
+					info.show();
+				}
+			});
+			addButtons.add(addButton);
+		}
+		
 		
 		
 		// Set alignment.
@@ -423,6 +461,7 @@ public class EchoBotGUI extends Application {
 			GridPane.setHalignment(labels.get(i), HPos.LEFT);
 			GridPane.setHalignment(friends.get(i), HPos.RIGHT);
 			GridPane.setHalignment(buttons.get(i), HPos.RIGHT);
+			GridPane.setHalignment(addButtons.get(i), HPos.RIGHT);
 		}
 		
 		// Add elements.
@@ -430,10 +469,16 @@ public class EchoBotGUI extends Application {
 			grid.add(labels.get(i), 0, i);
 			grid.add(friends.get(i), 1, i);
 			grid.add(buttons.get(i), 2, i);
+			grid.add(addButtons.get(i), 3, i);
 		}
 		
+		// Dashboard of every bot, redrawn at a fixed rate.
+		myDashboard = new FleetDashboard(myControllerList);
+		myDashboard.start();
+		
 		root.setTop(getMenuBar());
 		root.setCenter(grid);
+		root.setBottom(myDashboard.getTable());
 	}
 	
 	/**
@@ -447,36 +492,100 @@ public class EchoBotGUI extends Application {
 	}
 	
 	/**
-	 * Removes the login scene and displays the main scene.
-	 * The login scene is discarded until it is needed again.
+	 * {@inheritDoc}
+	 * The GUI takes the friend lists from the event bus instead, so
+	 * that many bots logging in wake the JavaFX thread once per
+	 * batch rather than once each; see onEvent().
 	 */
+	@Override
 	public void showMainScene() {
-		myLogins++;
-		
-		if (myLogins == myControllerList.size()) {
-			myMainScene = createMainScene();
+	}
+	
+	/**
+	 * Display the main scene once every bot still in the list has
+	 * received its friend list. The login scene is discarded
+	 * until it is needed again.
+	 */
+	private void showMainSceneIfReady() {
+		if (myLoginScene == null || myControllerList.isEmpty()) {
+			return;
+		}
+		for (Controller controller : myControllerList) {
+			if (!controller.hasFriendList()) {
+				return;
+			}
+		}
 			
-			myStage.setScene(myMainScene);
-			myStage.sizeToScene();
+		myMainScene = createMainScene();
 			
-			myLoginScene = null;
+		myStage.setScene(myMainScene);
+		myStage.sizeToScene();
 			
-			myStage.sizeToScene();
-			myStage.setResizable(false);
-		}
+		myLoginScene = null;
+		
+		myStage.sizeToScene();
+		myStage.setResizable(false);
 	}
 	
 	/**
-	 * Show the alert if the user has neglected to enter
-	 * correct details.
-	 * @param theMessage the alert message to display.
+	 * {@inheritDoc}
+	 * The GUI takes the login failures from the event bus instead;
+	 * see onEvent().
 	 */
+	@Override
 	public void showLoginAlert(String theMessage) {
-		showLoadingImage(false);
-		Alert loginAlert = new Alert(AlertType.ERROR);
-		loginAlert.setHeaderText(null);
-		loginAlert.setContentText(theMessage);
-		loginAlert.showAndWait();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Called on the JavaFX thread. Notes the login failures and
+	 * friend lists of the batch; they are acted on once, at its end.
+	 */
+	@Override
+	public void onEvent(BotEvent theEvent) {
+		switch (theEvent.getType()) {
+		case LOGIN:
+			if (theEvent.getValue() == 0 && myLoginScene != null) {
+				myLoginFailures.add(theEvent.getText());
+			}
+			break;
+		
+		case FRIEND_LIST:
+			myFriendListArrived = true;
+			break;
+		
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Shows one alert for the login failures of the batch, and the
+	 * main scene if every bot now has its friend list. Missed
+	 * events may have held friend lists, so they are checked for too.
+	 * The alert waits for the batch to return, as showAndWait() would
+	 * handle the next events from within it.
+	 */
+	@Override
+	public void endOfBatch(long theMissed) {
+		if (myFriendListArrived || theMissed > 0) {
+			myFriendListArrived = false;
+			showMainSceneIfReady();
+		}
+		
+		if (!myLoginFailures.isEmpty()) {
+			String message = String.join("\n", myLoginFailures);
+			myLoginFailures.clear();
+			
+			Platform.runLater(() -> {
+				showLoadingImage(false);
+				Alert loginAlert = new Alert(AlertType.ERROR);
+				loginAlert.setHeaderText(null);
+				loginAlert.setContentText(message);
+				loginAlert.showAndWait();
+			});
+		}
 	}
 	
 	/**
@@ -544,6 +653,10 @@ public class EchoBotGUI extends Application {
 	 * Initiate shutdown sequence.
 	 */
 	private void shutdown() {
+		myEvents.cancel();
+		if (myDashboard != null) {
+			myDashboard.stop();
+		}
 		for (int i = 0; i < myControllerList.size(); i++) {
 			myControllerList.get(i).shutdown();
 		}
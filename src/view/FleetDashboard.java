@@ -0,0 +1,205 @@
+package view;
+
+import java.util.List;
+
+import controller.Controller;
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.util.Callback;
+import model.BotSnapshot;
+import model.Config;
+import model.LobbyState;
+
+/**
+ * Table of every bot in the fleet: its connection, status, lobby
+ * state, message rate, round trip and last error.
+ *
+ * The table is not told about each change. Instead it redraws at a
+ * fixed rate, Config.DASHBOARD_FPS, from snapshots of the bots'
+ * counters taken on the JavaFX thread just before. However busy the
+ * bots are, the UI does the same work per frame, and the TableView
+ * only builds cells for the rows on screen, so thousands of bots
+ * cost little more than three.
+ */
+public class FleetDashboard {
+	
+	/**
+	 * The table.
+	 */
+	private TableView<BotSnapshot> myTable;
+	
+	/**
+	 * The bots' controllers.
+	 */
+	private Controller[] myControllers;
+	
+	/**
+	 * The bots' snapshots, in the same order as the controllers.
+	 * The table may show them sorted differently.
+	 */
+	private BotSnapshot[] mySnapshots;
+	
+	/**
+	 * Calls refresh() on every frame that is due.
+	 */
+	private AnimationTimer myTimer;
+	
+	/**
+	 * Nanoseconds between redraws.
+	 */
+	private long myFrameInterval;
+	
+	/**
+	 * The System.nanoTime() of the last redraw.
+	 */
+	private long myLastFrame;
+	
+	/**
+	 * Construct a dashboard of the given bots. Must be called on
+	 * the JavaFX thread.
+	 * @param theControllers the bots' controllers.
+	 */
+	public FleetDashboard(List<Controller> theControllers) {
+		myControllers = theControllers.toArray(new Controller[0]);
+		mySnapshots = new BotSnapshot[myControllers.length];
+		ObservableList<BotSnapshot> items = FXCollections.observableArrayList();
+		for (int i = 0; i < mySnapshots.length; i++) {
+			mySnapshots[i] = new BotSnapshot();
+			items.add(mySnapshots[i]);
+		}
+		
+		myFrameInterval = 1000000000L / Math.max(1, Config.DASHBOARD_FPS);
+		myTable = createTable(items);
+		myTimer = new AnimationTimer() {
+			@Override
+			public void handle(long theNow) {
+				long now = System.nanoTime();
+				if (now - myLastFrame >= myFrameInterval) {
+					myLastFrame = now;
+					refresh(now);
+				}
+			}
+		};
+		refresh(System.nanoTime());
+	}
+	
+	/**
+	 * Returns the table, to be placed in a scene.
+	 * @return the table.
+	 */
+	public TableView<BotSnapshot> getTable() {
+		return myTable;
+	}
+	
+	/**
+	 * Start redrawing the table.
+	 */
+	public void start() {
+		myTimer.start();
+	}
+	
+	/**
+	 * Stop redrawing the table.
+	 */
+	public void stop() {
+		myTimer.stop();
+	}
+	
+	/**
+	 * Take a snapshot of every bot and redraw the visible rows.
+	 * @param theNow the current System.nanoTime().
+	 */
+	private void refresh(long theNow) {
+		for (int i = 0; i < myControllers.length; i++) {
+			myControllers[i].snapshot(mySnapshots[i], theNow);
+		}
+		
+		if (!myTable.getSortOrder().isEmpty()) {
+			myTable.sort();
+		}
+		myTable.refresh();
+	}
+	
+	/**
+	 * Build the table and its columns.
+	 * @param theItems the snapshots to show.
+	 * @return the table.
+	 */
+	private static TableView<BotSnapshot> createTable(ObservableList<BotSnapshot> theItems) {
+		TableView<BotSnapshot> table = new TableView<BotSnapshot>(theItems);
+		table.setPlaceholder(new Label("No bots are logged in."));
+		table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+		table.setPrefSize(720, 240);
+		
+		TableColumn<BotSnapshot, String> bot = new TableColumn<BotSnapshot, String>("Bot");
+		bot.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<String>(cell.getValue().getEmail()));
+		
+		TableColumn<BotSnapshot, String> connection = new TableColumn<BotSnapshot, String>("Connection");
+		connection.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<String>(describeConnection(cell.getValue())));
+		
+		TableColumn<BotSnapshot, Number> status = new TableColumn<BotSnapshot, Number>("Status");
+		status.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<Number>(cell.getValue().getStatus()));
+		
+		TableColumn<BotSnapshot, LobbyState> lobby = new TableColumn<BotSnapshot, LobbyState>("Lobby");
+		lobby.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<LobbyState>(cell.getValue().getLobbyState()));
+		
+		TableColumn<BotSnapshot, Number> rate = new TableColumn<BotSnapshot, Number>("Messages/s");
+		rate.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<Number>(cell.getValue().getMessageRate()));
+		rate.setCellFactory(formatted("%.1f"));
+		
+		TableColumn<BotSnapshot, Number> roundTrip = new TableColumn<BotSnapshot, Number>("RTT (ms)");
+		roundTrip.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<Number>(cell.getValue().getRoundTrip()));
+		roundTrip.setCellFactory(formatted("%.1f"));
+		
+		TableColumn<BotSnapshot, String> error = new TableColumn<BotSnapshot, String>("Last error");
+		error.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<String>(cell.getValue().getLastError()));
+		
+		table.getColumns().add(bot);
+		table.getColumns().add(connection);
+		table.getColumns().add(status);
+		table.getColumns().add(lobby);
+		table.getColumns().add(rate);
+		table.getColumns().add(roundTrip);
+		table.getColumns().add(error);
+		return table;
+	}
+	
+	/**
+	 * Describe the state of a bot's data connection.
+	 * @param theSnapshot the bot's snapshot.
+	 * @return the description.
+	 */
+	private static String describeConnection(BotSnapshot theSnapshot) {
+		if (theSnapshot.isConnected()) {
+			return "Connected";
+		}
+		return theSnapshot.isReconnecting() ? "Reconnecting" : "Disconnected";
+	}
+	
+	/**
+	 * Returns a cell factory that formats numbers, leaving negative
+	 * ones, which stand for "not measured", blank.
+	 * @param theFormat the format, as for String.format().
+	 * @return the cell factory.
+	 */
+	private static Callback<TableColumn<BotSnapshot, Number>, TableCell<BotSnapshot, Number>> formatted(
+			String theFormat) {
+		return column -> new TableCell<BotSnapshot, Number>() {
+			@Override
+			protected void updateItem(Number theItem, boolean theEmpty) {
+				super.updateItem(theItem, theEmpty);
+				if (theEmpty || theItem == null || theItem.doubleValue() < 0) {
+					setText(null);
+				} else {
+					setText(String.format(theFormat, theItem.doubleValue()));
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,225 @@
+package view;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import controller.Controller;
+import controller.FleetLogin;
+import model.Account;
+import model.Config;
+import model.Friend;
+
+/**
+ * Runs a fleet of bots without a display or JavaFX. The accounts
+ * are read from a file with one bot per line:
+ * 
+ * <pre>
+ * # email password [friend[,friend...]]
+ * bot1@example.com secret1 MainPlayer
+ * bot2@example.com secret2 MainPlayer,SecondPlayer
+ * bot3@example.com secret3
+ * </pre>
+ * 
+ * The friends, matched against the player IDs or user names in the
+ * bot's friend list, are the ones whose game requests the bot accepts.
+ * Progress is printed to standard output, and the bots run until
+ * the process is stopped.
+ */
+public class HeadlessRunner {
+	
+	/**
+	 * The bots.
+	 */
+	private List<Bot> myBots;
+	
+	/**
+	 * Released when the runner shuts down.
+	 */
+	private CountDownLatch myStopped;
+	
+	/**
+	 * Construct a new, empty runner.
+	 */
+	public HeadlessRunner() {
+		myBots = new ArrayList<Bot>();
+		myStopped = new CountDownLatch(1);
+	}
+	
+	/**
+	 * Run the bots listed in the accounts file.
+	 * @param theArgs the path of the accounts file.
+	 */
+	public static void main(String... theArgs) {
+		if (theArgs.length != 1) {
+			System.err.println("Usage: java view.HeadlessRunner <accounts file>");
+			System.exit(1);
+		}
+		
+		HeadlessRunner runner = new HeadlessRunner();
+		
+		try {
+			runner.load(Paths.get(theArgs[0]));
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Unable to read " + theArgs[0] + ": " + e.getMessage());
+			System.exit(1);
+		}
+		
+		Runtime.getRuntime().addShutdownHook(new Thread(runner::shutdown, "echo-bot-shutdown"));
+		runner.start();
+		runner.awaitShutdown();
+	}
+	
+	/**
+	 * Add a bot for every account in a file.
+	 * @param theFile the accounts file.
+	 * @throws IOException if the file cannot be read.
+	 * @throws IllegalArgumentException if a line is malformed.
+	 */
+	public void load(Path theFile) throws IOException {
+		List<String> lines = Files.readAllLines(theFile, StandardCharsets.UTF_8);
+		
+		for (int i = 0; i < lines.size(); i++) {
+			String line = lines.get(i).trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			
+			String[] fields = line.split("\\s+");
+			if (fields.length < 2 || fields.length > 3)
+				throw new IllegalArgumentException("Line " + (i + 1) + " is not \"email password [friend]\".");
+			
+			addBot(new Account(fields[0], fields[1]), fields.length == 3 ? fields[2] : null);
+		}
+	}
+	
+	/**
+	 * Add a bot.
+	 * @param theAccount the bot's account.
+	 * @param theFriend the comma separated player IDs or user names
+	 * of the friends to accept requests from. Can be null.
+	 */
+	public void addBot(Account theAccount, String theFriend) {
+		myBots.add(new Bot(theAccount, theFriend));
+	}
+	
+	/**
+	 * Log every bot in, starting each as soon as it has logged in.
+	 * @return completes with the login results.
+	 */
+	public CompletableFuture<List<FleetLogin.Result>> start() {
+		List<Controller> controllers = new ArrayList<Controller>();
+		List<Account> accounts = new ArrayList<Account>();
+		
+		for (Bot bot : myBots) {
+			controllers.add(bot.myController);
+			accounts.add(bot.myAccount);
+		}
+		
+		long start = System.nanoTime();
+		System.out.println("Logging in " + myBots.size() + " bots.");
+		
+		return new FleetLogin(Config.LOGIN_CONCURRENCY)
+			.login(controllers, accounts, result -> System.out.println(result))
+			.whenComplete((results, error) -> {
+				if (results != null) {
+					int success = 0;
+					for (FleetLogin.Result result : results) {
+						success += result.isSuccess() ? 1 : 0;
+					}
+					System.out.println(success + " of " + results.size() + " bots logged in after "
+							+ (System.nanoTime() - start) / 1000000 + " ms.");
+				}
+			});
+	}
+	
+	/**
+	 * Block until the runner shuts down.
+	 */
+	public void awaitShutdown() {
+		try {
+			myStopped.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Stop every bot.
+	 */
+	public void shutdown() {
+		for (Bot bot : myBots) {
+			bot.myController.shutdown();
+		}
+		myStopped.countDown();
+	}
+	
+	/**
+	 * A bot of the fleet, and the view its controller reports to.
+	 */
+	private static class Bot implements BotView {
+		
+		/**
+		 * The bot's account.
+		 */
+		private Account myAccount;
+		
+		/**
+		 * The comma separated player IDs or user names of the
+		 * friends to accept requests from, or null.
+		 */
+		private String myFriend;
+		
+		/**
+		 * The bot's controller.
+		 */
+		private Controller myController;
+		
+		/**
+		 * Construct a new bot.
+		 * @param theAccount the bot's account.
+		 * @param theFriend the friends to accept requests from, or null.
+		 */
+		public Bot(Account theAccount, String theFriend) {
+			myAccount = theAccount;
+			myFriend = theFriend;
+			myController = new Controller(this);
+		}
+		
+		@Override
+		public void showLoginAlert(String theMessage) {
+			System.err.println(myAccount + ": " + theMessage);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * Select the configured friends from the friend list.
+		 */
+		@Override
+		public void showMainScene() {
+			if (myFriend == null) {
+				return;
+			}
+			
+			List<Friend> friends = new ArrayList<Friend>();
+			
+			for (String name : myFriend.split(",")) {
+				Friend friend = myController.findFriend(name);
+				
+				if (friend != null) {
+					friends.add(friend);
+					System.out.println(myAccount + ": accepting requests from " + friend.getUserName() + ".");
+				} else {
+					System.err.println(myAccount + ": " + name + " is not in the friend list.");
+				}
+			}
+			myController.setFriends(friends);
+		}
+	}
+}